@@ -10,6 +10,8 @@
  ******************************************************************************/
 package edu.washington.cs.cupid.conditional;
 
+import java.util.Arrays;
+
 import org.eclipse.swt.graphics.FontData;
 import org.eclipse.swt.graphics.RGB;
 
@@ -82,4 +84,46 @@ public final class Format {
 	public void setFont(final FontData[] font) {
 		this.font = font;
 	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((background == null) ? 0 : background.hashCode());
+		result = prime * result + Arrays.hashCode(font);
+		result = prime * result + ((foreground == null) ? 0 : foreground.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null) {
+			return false;
+		}
+		if (!(obj instanceof Format)) {
+			return false;
+		}
+		Format other = (Format) obj;
+		if (background == null) {
+			if (other.background != null) {
+				return false;
+			}
+		} else if (!background.equals(other.background)) {
+			return false;
+		}
+		if (!Arrays.equals(font, other.font)) {
+			return false;
+		}
+		if (foreground == null) {
+			if (other.foreground != null) {
+				return false;
+			}
+		} else if (!foreground.equals(other.foreground)) {
+			return false;
+		}
+		return true;
+	}
 }
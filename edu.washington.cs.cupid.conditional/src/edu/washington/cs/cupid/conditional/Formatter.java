@@ -10,27 +10,33 @@
  ******************************************************************************/
 package edu.washington.cs.cupid.conditional;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 import java.util.Set;
-import java.util.WeakHashMap;
 
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IResourceChangeEvent;
 import org.eclipse.core.resources.IResourceDelta;
 import org.eclipse.core.resources.IResourceDeltaVisitor;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.IJobChangeEvent;
 import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.DisposeEvent;
 import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.events.TreeEvent;
 import org.eclipse.swt.events.TreeListener;
+import org.eclipse.swt.graphics.Rectangle;
 import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Item;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Scrollable;
 import org.eclipse.swt.widgets.Table;
 import org.eclipse.swt.widgets.TableItem;
 import org.eclipse.swt.widgets.Tree;
@@ -41,6 +47,7 @@ import org.eclipse.ui.IWorkbenchPage;
 import org.eclipse.ui.IWorkbenchPartReference;
 import org.eclipse.ui.IWorkbenchWindow;
 import org.eclipse.ui.internal.decorators.DecoratorManager;
+import org.eclipse.ui.progress.UIJob;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
@@ -50,22 +57,25 @@ import com.google.common.collect.Sets;
 import edu.washington.cs.cupid.CapabilityExecutor;
 import edu.washington.cs.cupid.IInvalidationListener;
 import edu.washington.cs.cupid.TypeManager;
-import edu.washington.cs.cupid.capability.CapabilityJob;
+import edu.washington.cs.cupid.capability.CapabilityBatchJob;
 import edu.washington.cs.cupid.capability.CapabilityStatus;
 import edu.washington.cs.cupid.capability.CapabilityUtil;
+import edu.washington.cs.cupid.capability.ICapability;
 import edu.washington.cs.cupid.capability.ICapabilityArguments;
+import edu.washington.cs.cupid.conditional.internal.Activator;
 import edu.washington.cs.cupid.conditional.internal.FormatUtil;
 import edu.washington.cs.cupid.conditional.internal.FormatUtil.RuleCapabilityPair;
 import edu.washington.cs.cupid.conditional.internal.NullPartListener;
+import edu.washington.cs.cupid.conditional.internal.ViewDataIndex;
 import edu.washington.cs.cupid.conditional.internal.WorkbenchVisitor;
-import edu.washington.cs.cupid.jobs.ISchedulingRuleRegistry;
+import edu.washington.cs.cupid.conditional.preferences.PreferenceConstants;
 import edu.washington.cs.cupid.jobs.NullJobListener;
 
 /**
  * Applies conditional formatting rules to workbench items. Formatting rules are applied at the following times:
  * <ul>
  *  <li> When the formatting rule is first created / initialized </li>
- *  <li> When item becomes viewable (e.g., the parent tree node is expanded) </li>
+ *  <li> When item becomes viewable (e.g., the parent tree node is expanded, or the item is scrolled into view) </li>
  *  <li> When the item is decorated, since some decorations revert the formatting </li>
  * </ul>
  * 
@@ -96,15 +106,61 @@ public class Formatter extends NullPartListener implements DisposeListener, IInv
 	
 	private final Set<Item> pending = Sets.newIdentityHashSet();
 	
-	private final WeakHashMap<Object, Set<Item>> viewData = new WeakHashMap<Object, Set<Item>>();
+	/**
+	 * Items waiting to be evaluated. The items are submitted together once per iteration of the
+	 * UI event loop, so that each rule is evaluated for all of the items with a single job.
+	 * Accessed only from the UI thread.
+	 */
+	private final List<FormatRequest> batch = Lists.newArrayList();
+	
+	/**
+	 * Formats waiting to be applied, by item. The formats are applied together once per iteration of the 
+	 * UI event loop; a later update for an item replaces an earlier one. Guarded by <code>formatLock</code>.
+	 */
+	private final Map<Item, FormatUpdate> updates = Maps.newIdentityHashMap();
+	
+	/**
+	 * Items outside of the visible area of their {@link Table} or {@link Tree}, by container. Deferred items are
+	 * formatted when they are scrolled into view, or in the background once the visible items have been formatted.
+	 * Accessed only from the UI thread.
+	 */
+	private final Map<Control, Set<Item>> deferred = Maps.newIdentityHashMap();
+	
+	/**
+	 * Containers that have been scrolled or resized since their deferred items were last checked.
+	 * Accessed only from the UI thread.
+	 */
+	private final Set<Control> scrolled = Sets.newIdentityHashSet();
+	
+	private final DeferredFormatter deferredFormatter = new DeferredFormatter();
+	
+	/**
+	 * The number of pages above and below the visible area of a container that are formatted immediately.
+	 */
+	private static final int VIEWPORT_MARGIN_PAGES = 1;
+	
+	/**
+	 * The maximum number of deferred items submitted at once by the background formatter.
+	 */
+	private static final int DEFERRED_CHUNK_SIZE = 64;
+	
+	/**
+	 * The delay before formatting deferred items in the background (ms). The delay is restarted whenever
+	 * a container is scrolled.
+	 */
+	private static final long DEFERRED_DELAY_MILLIS = 500;
+	
+	/**
+	 * Index between items, the data they display, and the resources the data depends on; used to 
+	 * re-format only the items affected by a resource change. Guarded by <code>formatLock</code>.
+	 */
+	private final ViewDataIndex viewData = new ViewDataIndex(CapabilityExecutor.getSchedulingRuleRegistry());
 	
 	private final Object formatLock = new Object();
 	
 	private final IWorkbench workbench;
 	private final FormattingRuleManager ruleManager;
 	
-	private final ISchedulingRuleRegistry scheduler = CapabilityExecutor.getSchedulingRuleRegistry();
-	
 	/**
 	 * Construct a listener that applies conditional formatting rules to workbench items.
 	 * @throws Exception if instantiation fails
@@ -147,21 +203,16 @@ public class Formatter extends NullPartListener implements DisposeListener, IInv
 				if (!item.isDisposed()){
 					Object data = FormatUtil.data(item);
 
-					Queue<RuleCapabilityPair> ruleQueue = Lists.newLinkedList(FormatUtil.rules(data));
-					if (!ruleQueue.isEmpty()){
+					List<RuleCapabilityPair> rules = FormatUtil.rules(data);
+					if (!rules.isEmpty()){
 						// Apply new formatting
-						asyncConditionalFormat(owner, item, ruleQueue, data);
-					} else if (originalFormats.containsKey(item)){
-						// Restore original formatting
-						FormatUtil.setFormat(owner, item, originalFormats.get(item));
-						
+						asyncConditionalFormat(owner, item, rules, data);
+					} else {
 						synchronized(formatLock){
-							conditionalFormats.remove(item);
-						}
-					}else{
-						FormatUtil.setFormat(owner, item, new Format());
-						synchronized(formatLock){
-							conditionalFormats.remove(item);
+							// Restore original formatting, unless it is already shown
+							if (conditionalFormats.remove(item) != null && originalFormats.containsKey(item)){
+								FormatUtil.setFormat(owner, item, originalFormats.get(item));
+							}
 						}
 					}
 				}
@@ -169,7 +220,7 @@ public class Formatter extends NullPartListener implements DisposeListener, IInv
 		});
 	}
 	
-	private void asyncConditionalFormat(final Control owner, final Item item, final Queue<RuleCapabilityPair> ruleQueue, final Object data) {
+	private void asyncConditionalFormat(final Control owner, final Item item, final List<RuleCapabilityPair> rules, final Object data) {
 		if (data == null) return;
 		
 		synchronized (formatLock) {
@@ -180,60 +231,158 @@ public class Formatter extends NullPartListener implements DisposeListener, IInv
 			itemContainers.put(item, owner);
 			item.addDisposeListener(this);
 			
-			if (!viewData.containsKey(data)){
-				viewData.put(data, Sets.<Item>newIdentityHashSet());
-			}
-			viewData.get(data).add(item);
+			viewData.put(item, data);
 			pending.add(item);
 		}
 		
-		new SerialRuleExecutor(owner, item, ruleQueue, data).run();
+		if (batch.isEmpty()){
+			Display.getDefault().asyncExec(new Runnable() {
+				@Override
+				public void run() {
+					submitBatch();
+				}
+			});
+		}
+		batch.add(new FormatRequest(owner, item, rules, data));
 	}
 	
-	private class SerialRuleExecutor extends NullJobListener{
-
-		private final List<Format> resultQueue = Lists.newLinkedList();
+	/**
+	 * Evaluates the rules for the batched items, using a single job per rule capability.
+	 * <b>Must be run from the UI thread.</b>
+	 */
+	private void submitBatch(){
+		// Capability -> the requests to evaluate it for, and the index of the corresponding rule
+		Map<ICapability, List<RuleEvaluation>> evaluations = Maps.newLinkedHashMap();
+		
+		for (FormatRequest request : batch){
+			if (request.item.isDisposed()){
+				synchronized (formatLock){
+					pending.remove(request.item);
+				}
+				continue;
+			}
+			
+			// schedule the rules with the highest precedence first, since they may determine the format
+			for (int i = request.rules.size() - 1; i >= 0; i--){
+				ICapability capability = request.rules.get(i).capability;
+				if (!evaluations.containsKey(capability)){
+					evaluations.put(capability, Lists.<RuleEvaluation>newArrayList());
+				}
+				evaluations.get(capability).add(new RuleEvaluation(request, i));
+			}
+		}
+		batch.clear();
+		
+		for (Map.Entry<ICapability, List<RuleEvaluation>> entry : evaluations.entrySet()){
+			final ICapability capability = entry.getKey();
+			final List<RuleEvaluation> group = entry.getValue();
+			
+			List<ICapabilityArguments> inputs = Lists.newArrayList();
+			for (RuleEvaluation evaluation : group){
+				final Object arg = TypeManager.getCompatible(CapabilityUtil.unaryParameter(capability), evaluation.request.data);
+				inputs.add(CapabilityUtil.packUnaryInput(capability, arg));
+			}
+			
+			CapabilityExecutor.asyncExecAll(capability, inputs, Formatter.this, new NullJobListener(){
+				@Override
+				public void done(IJobChangeEvent event) {
+					List<CapabilityStatus> results = ((CapabilityBatchJob) event.getJob()).getResults();
+					
+					for (int j = 0; j < group.size(); j++){
+						CapabilityStatus status = results == null ? null : results.get(j);
+						boolean applies = false;
+						
+						// cancelled results have an OK code, but no value
+						if (status != null && status.getCode() == Status.OK && status.value() != null) {
+							applies = Boolean.TRUE.equals(CapabilityUtil.singleOutputValue(capability, status));
+						} else if (status != null && status.getException() != null) {
+							Activator.getDefault().logError("Error evaluating formatting rule capability " + capability.getName(), status.getException());
+						}
+						
+						group.get(j).request.done(group.get(j).rule, applies);
+					}
+				}
+			});
+		}
+	}
+	
+	/**
+	 * The evaluation of a request's rule.
+	 */
+	private static final class RuleEvaluation {
+		private final FormatRequest request;
+		private final int rule;
 		
+		private RuleEvaluation(FormatRequest request, int rule) {
+			this.request = request;
+			this.rule = rule;
+		}
+	}
+	
+	/**
+	 * A request to format an item. The rules are evaluated concurrently; the item is formatted once all
+	 * of its rules have been evaluated, or once the rules with the highest precedence fully determine 
+	 * the format (i.e., the background, foreground, and font).
+	 */
+	private class FormatRequest {
+
 		private final Control owner;
 		private final Item item;
-		private final Queue<RuleCapabilityPair> ruleQueue;
+		private final List<RuleCapabilityPair> rules;
 		private final Object data;
 		
-		private RuleCapabilityPair current = null;
+		/**
+		 * The format for each rule that applies to the item, or <code>null</code>.
+		 */
+		private final Format[] formats;
+		private final boolean[] evaluated;
+		private int remaining;
+		private boolean complete = false;
 		
-		public SerialRuleExecutor(Control owner, Item item, Queue<RuleCapabilityPair> ruleQueue, Object data) {
+		public FormatRequest(Control owner, Item item, List<RuleCapabilityPair> rules, Object data) {
 			this.owner = owner;
 			this.item = item;
 			this.data = data;
-			this.ruleQueue = ruleQueue;
+			this.rules = rules;
+			this.formats = new Format[rules.size()];
+			this.evaluated = new boolean[rules.size()];
+			this.remaining = rules.size();
 		}	
 		
-		private void run(){
-			if (ruleQueue.isEmpty()) return;
+		/**
+		 * Records the result of evaluating rule <code>rule</code>, and formats the item if the format
+		 * is determined.
+		 * @param rule the index of the rule
+		 * @param applies <code>true</code> iff the rule applies to the item
+		 */
+		private void done(int rule, boolean applies) {
+			List<Format> resultQueue = Lists.newLinkedList();
 			
-			current = ruleQueue.poll();	
-			final Object arg = TypeManager.getCompatible(CapabilityUtil.unaryParameter(current.capability), data);
-			final ICapabilityArguments packed = CapabilityUtil.packUnaryInput(current.capability, arg);
-			CapabilityExecutor.asyncExec(current.capability, packed, Formatter.this, this);
-		}
-		
-		@Override
-		public void done(IJobChangeEvent event) {
-			CapabilityJob<?> job = (CapabilityJob<?>) event.getJob();
-			CapabilityStatus status = (CapabilityStatus) job.getResult();
-		
-			if (status.getCode() == Status.OK) {
-				if ((Boolean) CapabilityUtil.singleOutputValue(current.capability, status)) {
-					resultQueue.add(current.rule.getFormat());
+			synchronized (this) {
+				if (complete) {
+					// the format was determined by rules with higher precedence
+					return;
+				}
+				
+				evaluated[rule] = true;
+				if (applies) {
+					formats[rule] = rules.get(rule).rule.getFormat();
+				}
+				
+				if (--remaining > 0 && !isDetermined()) {
+					return;
+				}
+				
+				complete = true;
+				
+				for (Format format : formats){
+					if (format != null){
+						resultQueue.add(format);
+					}
 				}
-			} else {
-				status.getException().printStackTrace();
 			}
 			
-			if (!ruleQueue.isEmpty()){
-				// need to keep calculating capabilities
-				run();
-			}else if (!resultQueue.isEmpty()){
+			if (!resultQueue.isEmpty()){
 				// apply the new formatting
 				if (originalFormats.containsKey(item)){
 					resultQueue.add(0, originalFormats.get(item));
@@ -241,41 +390,107 @@ public class Formatter extends NullPartListener implements DisposeListener, IInv
 				asyncFormat(owner, item, FormatUtil.merge(resultQueue));
 			}else {
 				// clear the formatting
+				asyncUpdate(new FormatUpdate(owner, item, null));		
+			}
+		}
+		
+		/**
+		 * Returns <code>true</code> iff the rules evaluated so far determine the background, foreground,
+		 * and font, regardless of the result of the remaining rules. Formats for later rules take 
+		 * precedence when merged.
+		 * @return <code>true</code> iff the format is fully determined
+		 */
+		private boolean isDetermined() {
+			boolean background = false;
+			boolean foreground = false;
+			boolean font = false;
+			
+			for (int i = formats.length - 1; i >= 0; i--){
+				if (!evaluated[i]){
+					return false;
+				} else if (formats[i] != null){
+					background |= formats[i].getBackground() != null;
+					foreground |= formats[i].getForeground() != null;
+					font |= formats[i].getFont() != null;
+					
+					if (background && foreground && font){
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+	}
+	
+	private void asyncFormat(final Control owner, final Item item, final Format format){
+		Preconditions.checkNotNull(format);
+		asyncUpdate(new FormatUpdate(owner, item, format));
+	}
+	
+	/**
+	 * Queues <code>update</code> to be applied with the other updates for the current iteration of the UI event loop.
+	 * @param update the update
+	 */
+	private void asyncUpdate(final FormatUpdate update){
+		synchronized (formatLock) {
+			if (updates.isEmpty()){
 				Display.getDefault().asyncExec(new Runnable() {
 					@Override
 					public void run() {
-						synchronized (formatLock) {
-							if (!item.isDisposed() && originalFormats.containsKey(item)) {
-								FormatUtil.setFormat(owner, item, originalFormats.get(item));
-							}
-							pending.remove(item);
-							conditionalFormats.remove(item);
-						}
+						applyUpdates();
 					}
-				});			
+				});
 			}
+			updates.put(update.item, update);
 		}
 	}
 	
-	private void asyncFormat(final Control owner, final Item item, final Format format){
-		Preconditions.checkNotNull(format);
-		
-		Display.getDefault().asyncExec(new Runnable() {
-			@Override
-			public void run() {
-				synchronized (formatLock) {
-					if (!item.isDisposed()) {
-						if (!originalFormats.containsKey(item)){
-							originalFormats.put(item, FormatUtil.getFormat(item));
-						}
-						
-						FormatUtil.setFormat(owner, item, format);
-						conditionalFormats.put(item, format);
-						pending.remove(item);
+	/**
+	 * Applies the queued format updates. <b>Must be run from the UI thread.</b>
+	 */
+	private void applyUpdates(){
+		synchronized (formatLock) {
+			for (FormatUpdate update : updates.values()){
+				Item item = update.item;
+				pending.remove(item);
+				
+				if (item.isDisposed()){
+					continue;
+				}
+				
+				if (update.format == null){
+					// the original format is already shown if the item is not conditionally formatted
+					if (conditionalFormats.remove(item) != null && originalFormats.containsKey(item)) {
+						FormatUtil.setFormat(update.owner, item, originalFormats.get(item));
 					}
+				} else if (update.format.equals(conditionalFormats.get(item))){
+					// the rules that apply to the item have not changed
+					continue;
+				} else {
+					if (!originalFormats.containsKey(item)){
+						originalFormats.put(item, FormatUtil.getFormat(item));
+					}
+					FormatUtil.setFormat(update.owner, item, update.format);
+					conditionalFormats.put(item, update.format);
 				}
 			}
-		});
+			updates.clear();
+		}
+	}
+	
+	/**
+	 * A format to apply to an item, or <code>null</code> to restore the item's original format.
+	 */
+	private static final class FormatUpdate {
+		private final Control owner;
+		private final Item item;
+		private final Format format;
+		
+		private FormatUpdate(Control owner, Item item, Format format) {
+			this.owner = owner;
+			this.item = item;
+			this.format = format;
+		}
 	}
 	
 	private final WorkbenchRegister registerVisitor;
@@ -287,9 +502,24 @@ public class Formatter extends NullPartListener implements DisposeListener, IInv
 		@Override
 		public void visit(Tree tree) {
 			tree.addTreeListener(new TreeExpandFormatter(tree));
+			addViewportListener(tree);
 			super.visit(tree);
 		}
 		
+		@Override
+		public void visit(Table table) {
+			addViewportListener(table);
+			super.visit(table);
+		}
+		
+		private void addViewportListener(final Scrollable control){
+			ViewportListener listener = new ViewportListener(control);
+			control.addListener(SWT.Resize, listener);
+			if (control.getVerticalBar() != null){
+				control.getVerticalBar().addListener(SWT.Selection, listener);
+			}
+		}
+		
 		@Override
 		public void visit(IWorkbenchWindow window) {
 			window.addPageListener(pageListener);
@@ -311,17 +541,204 @@ public class Formatter extends NullPartListener implements DisposeListener, IInv
 
 		@Override
 		public void visit(Tree tree, TreeItem item) {
-			asyncConditionalFormat(tree, item);
-			super.visit(tree, item);
+			if (viewportOnly()){
+				formatOrDefer(tree, item);
+				
+				// the children of collapsed items are visited when the item is expanded
+				if (item.getExpanded()){
+					super.visit(tree, item);
+				}
+			}else{
+				asyncConditionalFormat(tree, item);
+				super.visit(tree, item);
+			}
 		}
 
 		@Override
 		public void visit(Table table, TableItem item) {
-			asyncConditionalFormat(table, item);
+			if (viewportOnly()){
+				formatOrDefer(table, item);
+			}else{
+				asyncConditionalFormat(table, item);
+			}
 			super.visit(table, item);
 		}
 	}
 	
+	/**
+	 * Returns <code>true</code> iff items outside of the visible area of their container should be
+	 * formatted after the visible items.
+	 * @return <code>true</code> iff formatting of items outside of the visible area is deferred
+	 */
+	private static boolean viewportOnly(){
+		return Activator.getDefault().getPreferenceStore().getBoolean(PreferenceConstants.P_VIEWPORT_ONLY);
+	}
+	
+	/**
+	 * Formats <code>item</code> if it is in or near the visible area of <code>owner</code>; otherwise, defers 
+	 * formatting <code>item</code> until it is scrolled into view, or until the background formatter runs.
+	 * <b>Must be run from the UI thread.</b>
+	 * @param owner the table / tree
+	 * @param item the item to conditionally format
+	 */
+	private void formatOrDefer(final Control owner, final Item item){
+		if (isNearViewport(owner, item)){
+			asyncConditionalFormat(owner, item);
+		}else{
+			Set<Item> items = deferred.get(owner);
+			if (items == null){
+				items = Sets.newIdentityHashSet();
+				deferred.put(owner, items);
+			}
+			items.add(item);
+			deferredFormatter.schedule(DEFERRED_DELAY_MILLIS);
+		}
+	}
+	
+	/**
+	 * Formats the deferred items of <code>owner</code> that have been scrolled in or near the visible area.
+	 * <b>Must be run from the UI thread.</b>
+	 * @param owner the table / tree
+	 */
+	private void formatViewport(final Control owner){
+		Set<Item> items = deferred.get(owner);
+		if (items == null){
+			return;
+		}
+		
+		for (Iterator<Item> it = items.iterator(); it.hasNext(); ){
+			Item item = it.next();
+			if (item.isDisposed()){
+				it.remove();
+			}else if (!owner.isDisposed() && isNearViewport(owner, item)){
+				it.remove();
+				asyncConditionalFormat(owner, item);
+			}
+		}
+		
+		if (items.isEmpty() || owner.isDisposed()){
+			deferred.remove(owner);
+		}
+	}
+	
+	/**
+	 * Returns <code>true</code> iff <code>item</code> is shown within a page of the visible area of <code>owner</code>.
+	 * <b>Must be run from the UI thread.</b>
+	 * @param owner the table / tree
+	 * @param item the item
+	 * @return <code>true</code> iff <code>item</code> is shown within a page of the visible area of <code>owner</code>
+	 */
+	private static boolean isNearViewport(final Control owner, final Item item){
+		Rectangle bounds;
+		if (item instanceof TreeItem){
+			for (TreeItem parent = ((TreeItem) item).getParentItem(); parent != null; parent = parent.getParentItem()){
+				if (!parent.getExpanded()){
+					return false;
+				}
+			}
+			bounds = ((TreeItem) item).getBounds();
+		}else if (item instanceof TableItem){
+			bounds = ((TableItem) item).getBounds();
+		}else{
+			return true;
+		}
+		
+		Rectangle area = ((Scrollable) owner).getClientArea();
+		int margin = area.height * VIEWPORT_MARGIN_PAGES;
+		return bounds.y + bounds.height >= area.y - margin && bounds.y <= area.y + area.height + margin;
+	}
+	
+	/**
+	 * Formats the deferred items that have been scrolled into view when a container is scrolled or resized. 
+	 * Scrolling postpones the background formatter, so that the items in view are formatted first.
+	 */
+	private final class ViewportListener implements Listener{
+		private final Control control;
+		
+		private ViewportListener(final Control control) {
+			this.control = control;
+		}
+
+		@Override
+		public void handleEvent(final Event event) {
+			if (deferred.isEmpty()){
+				return;
+			}
+			
+			deferredFormatter.cancel();
+			deferredFormatter.schedule(DEFERRED_DELAY_MILLIS);
+			
+			if (!deferred.containsKey(control)){
+				return;
+			}
+			
+			// coalesce the events for the current iteration of the UI event loop
+			if (scrolled.add(control)){
+				Display.getDefault().asyncExec(new Runnable() {
+					@Override
+					public void run() {
+						scrolled.remove(control);
+						formatViewport(control);
+					}
+				});
+			}
+		}
+	}
+	
+	/**
+	 * Formats deferred items in the background, a chunk at a time. Chunks are only submitted once the
+	 * previously submitted formatting jobs have completed, so that the deferred items do not delay
+	 * formatting items that are scrolled into view.
+	 */
+	private final class DeferredFormatter extends UIJob{
+		private DeferredFormatter() {
+			super("Conditional Formatting");
+			setSystem(true);
+			setPriority(Job.DECAY);
+		}
+
+		@Override
+		public IStatus runInUIThread(final IProgressMonitor monitor) {
+			if (Job.getJobManager().find(Formatter.this).length > 0 || !batch.isEmpty()){
+				schedule(DEFERRED_DELAY_MILLIS);
+				return Status.OK_STATUS;
+			}
+			
+			int submitted = 0;
+			
+			for (Iterator<Map.Entry<Control, Set<Item>>> entries = deferred.entrySet().iterator(); entries.hasNext(); ){
+				Map.Entry<Control, Set<Item>> entry = entries.next();
+				Control owner = entry.getKey();
+				
+				for (Iterator<Item> it = entry.getValue().iterator(); it.hasNext() && submitted < DEFERRED_CHUNK_SIZE; ){
+					if (monitor.isCanceled()){
+						return Status.CANCEL_STATUS;
+					}
+					
+					Item item = it.next();
+					it.remove();
+					if (!item.isDisposed() && !owner.isDisposed()){
+						asyncConditionalFormat(owner, item);
+						submitted++;
+					}
+				}
+				
+				if (entry.getValue().isEmpty() || owner.isDisposed()){
+					entries.remove();
+				}
+				
+				if (submitted >= DEFERRED_CHUNK_SIZE){
+					break;
+				}
+			}
+			
+			if (!deferred.isEmpty()){
+				schedule(DEFERRED_DELAY_MILLIS);
+			}
+			return Status.OK_STATUS;
+		}
+	}
+	
 	private final PageListener pageListener = new PageListener();
 
 	private class PageListener implements IPageListener{
@@ -385,10 +802,7 @@ public class Formatter extends NullPartListener implements DisposeListener, IInv
 				originalFormats.remove(item);
 				conditionalFormats.remove(item);
 				itemContainers.remove(item);
-				
-				for (Set<Item> viewItems : viewData.values()){
-					viewItems.remove(item);
-				}
+				viewData.remove(item);
 			}
 		}
 	}
@@ -436,13 +850,8 @@ public class Formatter extends NullPartListener implements DisposeListener, IInv
 			if (delta.getAffectedChildren().length == 0) {
 				IResource resource = delta.getResource();
 				if (resource != null && interesting(delta)) {
-					Set<Object> inputs = Sets.newHashSet(viewData.keySet());
-					for (Object input : inputs) {
-						if (resource.isConflicting(scheduler.getSchedulingRule(input))) {		
-							for (final Item item : viewData.get(input)){
-								asyncConditionalFormat(itemContainers.get(item), item);
-							}
-						}
+					for (final Item item : viewData.affected(resource)){
+						asyncConditionalFormat(itemContainers.get(item), item);
 					}
 				}
 			}
@@ -460,7 +869,8 @@ public class Formatter extends NullPartListener implements DisposeListener, IInv
 		
 	/**
 	 * Whenever a decoration job completes, re-applies the current conditional formatting
-	 * and then kicks of a new conditional formatting job.
+	 * to the items whose formatting the decorator overwrote, and then kicks of a new conditional
+	 * formatting job for those items.
 	 * @author Todd Schiller
 	 */
 	private class DecorationManager extends NullJobListener{
@@ -475,7 +885,8 @@ public class Formatter extends NullPartListener implements DisposeListener, IInv
 							for (final Map.Entry<Item, Format> x : conditionalFormats.entrySet()){
 								Item item = (Item) x.getKey();			
 								
-								if (!pending.contains(item)){
+								// only re-apply formats that the decorator overwrote
+								if (!pending.contains(item) && !item.isDisposed() && !FormatUtil.isApplied(item, x.getValue())){
 									Control container = itemContainers.get(item);
 									FormatUtil.setFormat(container, item, x.getValue());
 									asyncConditionalFormat(container, item);		
@@ -10,6 +10,8 @@
  ******************************************************************************/
 package edu.washington.cs.cupid.conditional.internal;
 
+import java.util.List;
+
 import org.eclipse.core.runtime.ILog;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -23,6 +25,7 @@ import org.eclipse.ui.progress.WorkbenchJob;
 import org.osgi.framework.BundleContext;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import com.google.common.reflect.TypeToken;
 
 import edu.washington.cs.cupid.CupidPlatform;
@@ -31,6 +34,8 @@ import edu.washington.cs.cupid.capability.CapabilityUtil;
 import edu.washington.cs.cupid.capability.ICapability;
 import edu.washington.cs.cupid.capability.exception.MalformedCapabilityException;
 import edu.washington.cs.cupid.capability.exception.NoSuchCapabilityException;
+import edu.washington.cs.cupid.capability.snippet.SnippetCapability;
+import edu.washington.cs.cupid.capability.snippet.SnippetEvalManager;
 import edu.washington.cs.cupid.conditional.Formatter;
 import edu.washington.cs.cupid.conditional.FormattingRule;
 import edu.washington.cs.cupid.conditional.FormattingRuleManager;
@@ -77,9 +82,33 @@ public final class Activator extends AbstractUIPlugin implements IStartup {
 		
 		pluginLog = Platform.getLog(context.getBundle());
 	
+		compileSnippets();
 		new FormatWorkbenchJob().schedule();
 	}
 	
+	/**
+	 * Compiles the predicate snippets of the active formatting rules in the background, so that 
+	 * they are compiled together instead of one at a time when views are first formatted.
+	 */
+	private void compileSnippets(){
+		List<SnippetCapability<?, ?>> snippets = Lists.newArrayList();
+		
+		for (FormattingRule rule : ruleManager.activeRules()){
+			try {
+				SnippetCapability<?, ?> snippet = FormatUtil.getSnippetForRule(rule);
+				if (snippet != null){
+					snippets.add(snippet);
+				}
+			} catch (Exception e) {
+				// NO OP: the error is logged when the rule is first applied
+			}
+		}
+		
+		if (!snippets.isEmpty()){
+			SnippetEvalManager.getInstance().compileAllJob(snippets).schedule();
+		}
+	}
+	
 	public class FormatWorkbenchJob extends WorkbenchJob{
 		public FormatWorkbenchJob() {
 			super("Initialize Conditional Formatting");
@@ -147,7 +176,7 @@ public final class Activator extends AbstractUIPlugin implements IStartup {
 	 * @param msg localized error message
 	 * @param e the exception
 	 */
-	public void logError(final String msg, final Exception e) {
+	public void logError(final String msg, final Throwable e) {
 		pluginLog.log(new Status(Status.ERROR, PLUGIN_ID, Status.ERROR, msg, e));			
 	}
 }
@@ -4,15 +4,21 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Queue;
+import java.util.Map;
 import java.util.WeakHashMap;
 
+import org.eclipse.jface.resource.FontDescriptor;
+import org.eclipse.jface.resource.JFaceResources;
+import org.eclipse.jface.resource.ResourceManager;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.graphics.RGB;
 import org.eclipse.swt.widgets.Control;
-import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Item;
 import org.eclipse.swt.widgets.Table;
 import org.eclipse.swt.widgets.TableItem;
@@ -21,6 +27,7 @@ import org.eclipse.swt.widgets.TreeItem;
 import org.eclipse.swt.widgets.Widget;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.reflect.TypeToken;
 
@@ -117,20 +124,28 @@ public final class FormatUtil {
 		return result;
 	}
 	
-	private static final WeakHashMap<FormattingRule, ICapability> capabilityCache = new WeakHashMap<FormattingRule, ICapability>();
-	
-	public static ICapability getCapabilityForRule(FormattingRule rule) throws ClassNotFoundException, NoSuchCapabilityException{
-		if (capabilityCache.containsKey(rule)){
-			return capabilityCache.get(rule);
+	/**
+	 * Returns the predicate snippet capability for <code>rule</code>, or <code>null</code> if the rule has no snippet.
+	 * @param rule the formatting rule
+	 * @return the predicate snippet capability for <code>rule</code>, or <code>null</code>
+	 * @throws ClassNotFoundException iff the input type is not found
+	 * @throws NoSuchCapabilityException iff the rule's capability is not available
+	 */
+	public static SnippetCapability<?, ?> getSnippetForRule(FormattingRule rule) throws ClassNotFoundException, NoSuchCapabilityException{
+		if (rule.getSnippet() == null){
+			return null;
 		}
 		
 		TypeToken<?> inputType = TypeManager.forName(rule.getQualifiedType());
-		
 		ICapability c = rule.getCapabilityId() == null ? null : CupidPlatform.getCapabilityRegistry().findCapability(rule.getCapabilityId());
 		ICapability.IOutput<?> o = (c == null) ? null : CapabilityUtil.findOutput(c, rule.getCapabilityOutput());
 		
+		return getSnippetForRule(rule, inputType, o);
+	}
+	
+	private static SnippetCapability<?, ?> getSnippetForRule(FormattingRule rule, TypeToken<?> inputType, ICapability.IOutput<?> o){
 		TypeToken<?> snippetInputType = (o == null) ? inputType : o.getType();
-				
+		
 		@SuppressWarnings({ "rawtypes", "unchecked" }) // checked when the snippet is written, and dynamically at runtime
 		SnippetCapability s = rule.getSnippet() == null ? null :
 			new SnippetCapability(
@@ -138,6 +153,23 @@ public final class FormatUtil {
 					"Predicate snippet for formatting rule " + rule.getName(),
 					snippetInputType, TypeToken.of(boolean.class),
 					rule.getSnippet());
+		
+		return s;
+	}
+	
+	private static final WeakHashMap<FormattingRule, ICapability> capabilityCache = new WeakHashMap<FormattingRule, ICapability>();
+	
+	public static ICapability getCapabilityForRule(FormattingRule rule) throws ClassNotFoundException, NoSuchCapabilityException{
+		if (capabilityCache.containsKey(rule)){
+			return capabilityCache.get(rule);
+		}
+		
+		TypeToken<?> inputType = TypeManager.forName(rule.getQualifiedType());
+		
+		ICapability c = rule.getCapabilityId() == null ? null : CupidPlatform.getCapabilityRegistry().findCapability(rule.getCapabilityId());
+		ICapability.IOutput<?> o = (c == null) ? null : CapabilityUtil.findOutput(c, rule.getCapabilityOutput());
+		
+		SnippetCapability<?, ?> s = getSnippetForRule(rule, inputType, o);
 
 		ICapability result;
 		
@@ -159,9 +191,47 @@ public final class FormatUtil {
 		return result;
 	}
 	
+	/**
+	 * The colors and fonts applied to each formatted widget. The resources are shared between widgets and
+	 * reference-counted; a widget's resources are released when they are replaced, or when the widget is disposed.
+	 * Accessed only from the UI thread.
+	 */
+	private static final Map<Widget, HeldResources> held = Maps.newIdentityHashMap();
+	
+	private static final DisposeListener RELEASE_RESOURCES = new DisposeListener() {
+		@Override
+		public void widgetDisposed(final DisposeEvent e) {
+			HeldResources resources = held.remove(e.widget);
+			if (resources != null) {
+				resources.release(JFaceResources.getResources(e.widget.getDisplay()));
+			}
+		}
+	};
+	
+	/**
+	 * The shared colors and font held by a widget.
+	 */
+	private static final class HeldResources {
+		private RGB background = null;
+		private RGB foreground = null;
+		private FontDescriptor font = null;
+		
+		private void release(final ResourceManager resources) {
+			if (background != null) {
+				resources.destroyColor(background);
+			}
+			if (foreground != null) {
+				resources.destroyColor(foreground);
+			}
+			if (font != null) {
+				resources.destroyFont(font);
+			}
+		}
+	}
+	
 	/**
 	 * Apply background color, foreground color, and font to <code>object</code>, if the object
-	 * supports the corresponding setter methods.
+	 * supports the corresponding setter methods. <b>Must be run from the UI thread.</b>
 	 * @param owner the parent table or tree
 	 * @param widget the target
 	 * @param format the format
@@ -170,74 +240,103 @@ public final class FormatUtil {
 		checkArgument(!widget.isDisposed(), "widget is disposed");
 		checkNotNull(format);
 		
-		Display display = Display.getDefault();
-		Class<?> clazz = widget.getClass();
+		ResourceManager resources = JFaceResources.getResources(widget.getDisplay());
+		
+		HeldResources current = held.get(widget);
+		if (current == null) {
+			current = new HeldResources();
+			held.put(widget, current);
+			widget.addDisposeListener(RELEASE_RESOURCES);
+		}
 		
 		if (format.getBackground() != null) {
-			Color bg = new Color(display, format.getBackground());
-			
-			try {
-				clazz.getMethod("setBackground", Color.class).invoke(widget, bg);
-			} catch (NoSuchMethodException e) {
-				// NO OP
-			} catch (Exception e) {
-				throw new RuntimeException(e);
-			}
-			
-			if (owner != null && owner instanceof Tree && widget instanceof TreeItem){
-				for (int i = 0 ; i < ((Tree) owner).getColumnCount() + 1; i++){
-					((TreeItem) widget).setBackground(i, bg);
-				}
-			}else if (owner != null && owner instanceof Table && widget instanceof TableItem){
-				for (int i = 0 ; i < ((Table) owner).getColumnCount() + 1; i++){
-					((TableItem) widget).setBackground(i, bg);
-				}
+			setBackground(owner, widget, resources.createColor(format.getBackground()));
+			if (current.background != null) {
+				resources.destroyColor(current.background);
 			}
+			current.background = format.getBackground();
 		}
 		if (format.getForeground() != null) {
-			Color fg = new Color(display, format.getForeground());
-			
-			try {
-				clazz.getMethod("setForeground", Color.class).invoke(widget, fg);
-			} catch (NoSuchMethodException e) {
-				// NO OP
-			} catch (Exception e) {
-				throw new RuntimeException(e);
-			}
-			
-			if (owner != null && owner instanceof Tree && widget instanceof TreeItem){
-				for (int i = 0 ; i < ((Tree) owner).getColumnCount() + 1; i++){
-					((TreeItem) widget).setForeground(i, fg);
-				}
-			}else if (owner != null && owner instanceof Table && widget instanceof TableItem){
-				for (int i = 0 ; i < ((Table) owner).getColumnCount() + 1; i++){
-					((TableItem) widget).setForeground(i, fg);
-				}
+			setForeground(owner, widget, resources.createColor(format.getForeground()));
+			if (current.foreground != null) {
+				resources.destroyColor(current.foreground);
 			}
+			current.foreground = format.getForeground();
 		}
 		if (format.getFont() != null) {
-			Font font = new Font(display, format.getFont());
-	
-			try {
-				clazz.getMethod("setFont", Font.class).invoke(widget, font);
-			} catch (NoSuchMethodException e) {
-				// NO OP
-			} catch (Exception e) {
-				throw new RuntimeException(e);
-			}
-			
-			if (owner != null && owner instanceof Tree && widget instanceof TreeItem){
-				for (int i = 0 ; i < ((Tree) owner).getColumnCount() + 1; i++){
-					((TreeItem) widget).setFont(i, font);
-				}
-			}else if (owner != null && owner instanceof Table && widget instanceof TableItem){
-				for (int i = 0 ; i < ((Table) owner).getColumnCount() + 1; i++){
-					((TableItem) widget).setFont(i, font);
-				}
+			FontDescriptor font = FontDescriptor.createFrom(format.getFont());
+			setFont(owner, widget, resources.createFont(font));
+			if (current.font != null) {
+				resources.destroyFont(current.font);
 			}
+			current.font = font;
 		}	
 	}	
 	
+	private static int columns(final Control owner) {
+		if (owner instanceof Tree) {
+			return ((Tree) owner).getColumnCount();
+		} else if (owner instanceof Table) {
+			return ((Table) owner).getColumnCount();
+		} else {
+			return 0;
+		}
+	}
+	
+	private static void setBackground(final Control owner, final Widget widget, final Color color) {
+		if (widget instanceof TreeItem) {
+			TreeItem item = (TreeItem) widget;
+			item.setBackground(color);
+			for (int i = 0; i < columns(owner); i++) {
+				item.setBackground(i, color);
+			}
+		} else if (widget instanceof TableItem) {
+			TableItem item = (TableItem) widget;
+			item.setBackground(color);
+			for (int i = 0; i < columns(owner); i++) {
+				item.setBackground(i, color);
+			}
+		} else if (widget instanceof Control) {
+			((Control) widget).setBackground(color);
+		}
+	}
+	
+	private static void setForeground(final Control owner, final Widget widget, final Color color) {
+		if (widget instanceof TreeItem) {
+			TreeItem item = (TreeItem) widget;
+			item.setForeground(color);
+			for (int i = 0; i < columns(owner); i++) {
+				item.setForeground(i, color);
+			}
+		} else if (widget instanceof TableItem) {
+			TableItem item = (TableItem) widget;
+			item.setForeground(color);
+			for (int i = 0; i < columns(owner); i++) {
+				item.setForeground(i, color);
+			}
+		} else if (widget instanceof Control) {
+			((Control) widget).setForeground(color);
+		}
+	}
+	
+	private static void setFont(final Control owner, final Widget widget, final Font font) {
+		if (widget instanceof TreeItem) {
+			TreeItem item = (TreeItem) widget;
+			item.setFont(font);
+			for (int i = 0; i < columns(owner); i++) {
+				item.setFont(i, font);
+			}
+		} else if (widget instanceof TableItem) {
+			TableItem item = (TableItem) widget;
+			item.setFont(font);
+			for (int i = 0; i < columns(owner); i++) {
+				item.setFont(i, font);
+			}
+		} else if (widget instanceof Control) {
+			((Control) widget).setFont(font);
+		}
+	}
+	
 	/**
 	 * Returns the formatting of <tt>widget</tt>. Does not return the individual cell coloring
 	 * for items with multiple columns.
@@ -249,35 +348,41 @@ public final class FormatUtil {
 		
 		Format result = new Format();
 		
-		Class<?> clazz = widget.getClass();
-		
-		try {
-			result.setBackground(((Color) clazz.getMethod("getBackground").invoke(widget)).getRGB());
-		} catch (NoSuchMethodException e) {
-			// NO OP
-		} catch (Exception e) {
-			throw new RuntimeException(e);
-		}
-		
-		try {
-			result.setForeground(((Color) clazz.getMethod("getForeground").invoke(widget)).getRGB());
-		} catch (NoSuchMethodException e) {
-			// NO OP
-		} catch (Exception e) {
-			throw new RuntimeException(e);
-		}
-		
-		try {
-			result.setFont(((Font) clazz.getMethod("getFont").invoke(widget)).getFontData());
-		} catch (NoSuchMethodException e) {
-			// NO OP
-		} catch (Exception e) {
-			throw new RuntimeException(e);
+		if (widget instanceof TreeItem) {
+			TreeItem item = (TreeItem) widget;
+			result.setBackground(item.getBackground().getRGB());
+			result.setForeground(item.getForeground().getRGB());
+			result.setFont(item.getFont().getFontData());
+		} else if (widget instanceof TableItem) {
+			TableItem item = (TableItem) widget;
+			result.setBackground(item.getBackground().getRGB());
+			result.setForeground(item.getForeground().getRGB());
+			result.setFont(item.getFont().getFontData());
+		} else if (widget instanceof Control) {
+			Control control = (Control) widget;
+			result.setBackground(control.getBackground().getRGB());
+			result.setForeground(control.getForeground().getRGB());
+			result.setFont(control.getFont().getFontData());
 		}
 		
 		return result;
 	}
 
+	/**
+	 * Returns <code>true</code> iff the colors and font specified by <code>format</code> are currently
+	 * applied to <code>widget</code>; attributes not specified by <code>format</code> are ignored.
+	 * @param widget the widget
+	 * @param format the format
+	 * @return <code>true</code> iff <code>format</code> is currently applied to <code>widget</code>
+	 */
+	public static boolean isApplied(final Widget widget, final Format format) {
+		Format current = getFormat(widget);
+		
+		return (format.getBackground() == null || format.getBackground().equals(current.getBackground()))
+			&& (format.getForeground() == null || format.getForeground().equals(current.getForeground()))
+			&& (format.getFont() == null || Arrays.equals(format.getFont(), current.getFont()));
+	}
+
 	public static class RuleCapabilityPair{
 		public final FormattingRule rule;
 		public final ICapability capability;
@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Todd Schiller.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Todd Schiller - initial API, implementation, and documentation
+ ******************************************************************************/
+package edu.washington.cs.cupid.conditional.internal;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.MultiRule;
+import org.eclipse.swt.widgets.Item;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import edu.washington.cs.cupid.jobs.ISchedulingRuleRegistry;
+
+/**
+ * <p>An index between workbench items, the data they display, and the resources that the data depends on
+ * (i.e., the resources in the data's scheduling rule).</p>
+ *
+ * <p>Data that is no longer displayed by any item is dropped from the index: immediately from the item
+ * index, and from the resource index the next time one of its resources changes. Data whose scheduling 
+ * rule is not a resource is checked against every resource change. The index is not thread-safe.</p>
+ * @author Todd Schiller (tws@cs.washington.edu)
+ */
+public final class ViewDataIndex {
+
+	private final ISchedulingRuleRegistry scheduler;
+
+	/**
+	 * Data -> the items displaying the data.
+	 */
+	private final Map<Object, Set<Item>> items = Maps.newHashMap();
+
+	/**
+	 * Item -> the data displayed by the item.
+	 */
+	private final Map<Item, Object> data = Maps.newIdentityHashMap();
+
+	/**
+	 * Resource path -> the data whose scheduling rule contains the resource.
+	 */
+	private final Map<IPath, Set<Object>> byResource = Maps.newHashMap();
+
+	/**
+	 * Data -> scheduling rule, for data whose scheduling rule is not a resource.
+	 */
+	private final Map<Object, ISchedulingRule> unindexed = Maps.newHashMap();
+
+	/**
+	 * Construct an empty index.
+	 * @param scheduler the registry used to determine the scheduling rule for data
+	 */
+	public ViewDataIndex(final ISchedulingRuleRegistry scheduler) {
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * Records that <code>item</code> displays <code>value</code>, replacing any data previously
+	 * recorded for <code>item</code>.
+	 * @param item the item
+	 * @param value the data displayed by the item
+	 */
+	public void put(final Item item, final Object value) {
+		Object previous = data.put(item, value);
+		if (previous != null && previous != value) {
+			removeItem(previous, item);
+		}
+
+		Set<Item> displaying = items.get(value);
+		if (displaying == null) {
+			displaying = Sets.newIdentityHashSet();
+			items.put(value, displaying);
+			index(value);
+		}
+		displaying.add(item);
+	}
+
+	/**
+	 * Removes <code>item</code> from the index.
+	 * @param item the item
+	 */
+	public void remove(final Item item) {
+		Object value = data.remove(item);
+		if (value != null) {
+			removeItem(value, item);
+		}
+	}
+
+	/**
+	 * Returns the items displaying data whose scheduling rule conflicts with <code>resource</code>.
+	 * @param resource the resource
+	 * @return the items displaying data whose scheduling rule conflicts with <code>resource</code>
+	 */
+	public Set<Item> affected(final IResource resource) {
+		Set<Item> result = Sets.newIdentityHashSet();
+		IPath changed = resource.getFullPath();
+
+		// data depending on the resource, or a container of the resource
+		for (IPath path = changed; ; path = path.removeLastSegments(1)) {
+			collect(path, result);
+			if (path.segmentCount() == 0) {
+				break;
+			}
+		}
+
+		// data depending on a member of the resource
+		if (resource.getType() != IResource.FILE) {
+			for (IPath path : Sets.newHashSet(byResource.keySet())) {
+				if (changed.isPrefixOf(path) && !changed.equals(path)) {
+					collect(path, result);
+				}
+			}
+		}
+
+		for (Map.Entry<Object, ISchedulingRule> entry : unindexed.entrySet()) {
+			if (resource.isConflicting(entry.getValue())) {
+				Set<Item> displaying = items.get(entry.getKey());
+				if (displaying != null) {
+					result.addAll(displaying);
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Adds the items displaying the data indexed under <code>path</code> to <code>result</code>, and
+	 * drops the path from the index if it no longer has any data.
+	 * @param path the resource path
+	 * @param result the set of items
+	 */
+	private void collect(final IPath path, final Set<Item> result) {
+		Set<Object> values = byResource.get(path);
+		if (values == null) {
+			return;
+		}
+
+		for (Iterator<Object> it = values.iterator(); it.hasNext(); ) {
+			Set<Item> displaying = items.get(it.next());
+			if (displaying == null) {
+				it.remove();
+			} else {
+				result.addAll(displaying);
+			}
+		}
+
+		if (values.isEmpty()) {
+			byResource.remove(path);
+		}
+	}
+
+	private void removeItem(final Object value, final Item item) {
+		Set<Item> displaying = items.get(value);
+		if (displaying != null) {
+			displaying.remove(item);
+			if (displaying.isEmpty()) {
+				items.remove(value);
+				unindexed.remove(value);
+			}
+		}
+	}
+
+	/**
+	 * Indexes <code>value</code> by the resources in its scheduling rule.
+	 * @param value the data
+	 */
+	private void index(final Object value) {
+		ISchedulingRule rule = scheduler.getSchedulingRule(value);
+
+		if (rule == null) {
+			return;
+		} else if (rule instanceof IResource) {
+			indexResource(value, (IResource) rule);
+		} else if (rule instanceof MultiRule) {
+			for (ISchedulingRule child : ((MultiRule) rule).getChildren()) {
+				if (child instanceof IResource) {
+					indexResource(value, (IResource) child);
+				} else {
+					unindexed.put(value, rule);
+				}
+			}
+		} else {
+			unindexed.put(value, rule);
+		}
+	}
+
+	private void indexResource(final Object value, final IResource resource) {
+		IPath path = resource.getFullPath();
+		Set<Object> values = byResource.get(path);
+		if (values == null) {
+			values = Sets.newHashSet();
+			byResource.put(path, values);
+		}
+		values.add(value);
+	}
+}
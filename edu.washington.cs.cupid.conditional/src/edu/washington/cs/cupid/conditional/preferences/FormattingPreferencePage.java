@@ -17,6 +17,7 @@ import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.events.SelectionListener;
 import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Table;
@@ -45,6 +46,7 @@ public final class FormattingPreferencePage extends PreferencePage implements IW
 	private Composite composite;
 	private Table table;
 	private ToolBar toolbar;
+	private Button viewportOnly;
 			    
     /**
      * Construct the preference page for defining and editing conditional formatting rules.
@@ -68,6 +70,7 @@ public final class FormattingPreferencePage extends PreferencePage implements IW
 	@Override
 	protected void performDefaults() {
 		disableAll();
+		viewportOnly.setSelection(getPreferenceStore().getDefaultBoolean(PreferenceConstants.P_VIEWPORT_ONLY));
 	}
 	
 	@Override
@@ -252,6 +255,10 @@ public final class FormattingPreferencePage extends PreferencePage implements IW
 		if (table.getItemCount() > 0) {
 			table.select(0);
 		}
+		
+		viewportOnly = new Button(composite, SWT.CHECK);
+		viewportOnly.setText("Format visible items first; format the remaining items in the background");
+		viewportOnly.setSelection(getPreferenceStore().getBoolean(PreferenceConstants.P_VIEWPORT_ONLY));
 				
 		return null;
 	}
@@ -291,5 +298,6 @@ public final class FormattingPreferencePage extends PreferencePage implements IW
 			rules[i] = (FormattingRule) table.getItem(i).getData();
 		}
 		Activator.getDefault().getPreferenceStore().setValue(PreferenceConstants.P_RULES, gson.toJson(rules));
+		Activator.getDefault().getPreferenceStore().setValue(PreferenceConstants.P_VIEWPORT_ONLY, viewportOnly.getSelection());
 	}
 }
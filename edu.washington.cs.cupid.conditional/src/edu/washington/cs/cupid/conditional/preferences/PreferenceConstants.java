@@ -24,4 +24,10 @@ public final class PreferenceConstants {
 	 */
 	public static final String P_RULES = "formattingRulesPreference";
 	
+	/**
+	 * <code>true</code> iff items far outside the visible area of a tree or table are formatted
+	 * in the background, after the visible items.
+	 */
+	public static final String P_VIEWPORT_ONLY = "formatViewportOnlyPreference";
+	
 }
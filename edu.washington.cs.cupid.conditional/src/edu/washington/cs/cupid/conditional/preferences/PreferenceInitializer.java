@@ -24,6 +24,7 @@ public final class PreferenceInitializer extends AbstractPreferenceInitializer {
 	public void initializeDefaultPreferences() {
 		IPreferenceStore store = Activator.getDefault().getPreferenceStore();
 		store.setDefault(PreferenceConstants.P_RULES, "");
+		store.setDefault(PreferenceConstants.P_VIEWPORT_ONLY, true);
 	}
 
 }
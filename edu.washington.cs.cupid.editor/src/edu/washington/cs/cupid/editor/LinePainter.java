@@ -13,6 +13,7 @@ import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IDocumentListener;
@@ -21,6 +22,7 @@ import org.eclipse.jface.text.JFaceTextUtil;
 import org.eclipse.jface.text.source.CompositeRuler;
 import org.eclipse.jface.text.source.ILineRange;
 import org.eclipse.jface.text.source.IVerticalRulerColumn;
+import org.eclipse.jface.text.source.LineRange;
 import org.eclipse.jface.util.IPropertyChangeListener;
 import org.eclipse.jface.util.PropertyChangeEvent;
 import org.eclipse.swt.custom.StyledText;
@@ -56,6 +58,30 @@ public class LinePainter implements IDocumentListener, IPropertyChangeListener{
 	/** Capabilities providing text range output **/
 	private List<LineProvider> providers = Lists.newArrayList();
 	
+	/** Line shifts for the edits made while capabilities are running; applied to their results **/
+	private final List<LineShift> shifts = Lists.newArrayList();
+	
+	/** The number of line shifts recorded when each running capability was started **/
+	private final Map<LineProvider, Integer> started = Maps.newHashMap();
+	
+	/** The line and number of lines replaced by the current edit, recorded before the document changes **/
+	private int editLine = -1;
+	private int editLines = 0;
+	/** <code>true</code> iff the current edit starts at the beginning of its first line **/
+	private boolean editAtLineStart = false;
+	
+	/** Delay after the last edit before the capabilities are rerun (ms) **/
+	private static final int DEBOUNCE_MILLIS = 300;
+	
+	/** Reruns the capabilities once the user stops typing **/
+	private final Runnable rerun = new Runnable() {
+		public void run() {
+			if (fViewer != null){
+				runAll();
+			}
+		}
+	};
+	
 	/** The vertical ruler column that delegates painting to this painter. */
 	private final IVerticalRulerColumn fColumn;
 	/** The parent ruler. */
@@ -216,6 +242,7 @@ public class LinePainter implements IDocumentListener, IPropertyChangeListener{
 				
 				running.add(provider);
 				pending.remove(provider);
+				started.put(provider, shifts.size());
 				
 				CapabilityExecutor.asyncExec(provider.getCapability(), 
 						CapabilityUtil.packUnaryInput(provider.getCapability(), input), 
@@ -236,10 +263,24 @@ public class LinePainter implements IDocumentListener, IPropertyChangeListener{
 		@Override
 		public void done(IJobChangeEvent event) {
 			CapabilityStatus status = (CapabilityStatus) event.getResult();
-			Collection<ILineRange> value = (Collection<ILineRange>) status.value().getOutput(provider.getOutput());
 					
 			synchronized (running) {
-				ranges.put(provider, value);
+				int start = started.remove(provider);
+				
+				if (status.value() != null){
+					Collection<ILineRange> value = (Collection<ILineRange>) status.value().getOutput(provider.getOutput());
+					
+					// the document may have been edited while the capability was running
+					for (LineShift shift : shifts.subList(start, shifts.size())){
+						value = shift.apply(value);
+					}
+					ranges.put(provider, value);
+				}
+				
+				if (started.isEmpty()){
+					shifts.clear();
+				}
+				
 				running.remove(provider);
 				runPending();
 			}
@@ -292,7 +333,14 @@ public class LinePainter implements IDocumentListener, IPropertyChangeListener{
 
 	@Override
 	public void documentAboutToBeChanged(DocumentEvent event) {
-		// NOP
+		try {
+			IDocument document = event.getDocument();
+			editLine = document.getLineOfOffset(event.getOffset());
+			editLines = document.getNumberOfLines(event.getOffset(), event.getLength()) - 1;
+			editAtLineStart = event.getOffset() == document.getLineOffset(editLine);
+		} catch (BadLocationException e) {
+			editLine = -1;
+		}
 	}
 
 	private void runAll(){
@@ -305,15 +353,97 @@ public class LinePainter implements IDocumentListener, IPropertyChangeListener{
 	
 	private void runPending(){
 		synchronized (running) {
-			for (LineProvider provider : pending){
+			for (LineProvider provider : Lists.newArrayList(pending)){
 				runProvider(provider);
 			}
 		}
 	}
 	
+	/**
+	 * Shifts the current ranges to account for the edit, and reruns the capabilities once the user stops
+	 * editing the document.
+	 */
 	@Override
 	public void documentChanged(DocumentEvent event) {
-		runAll();
+		if (editLine >= 0){
+			try {
+				int text = event.getText() == null ? 0 : event.getText().length();
+				int inserted = event.getDocument().getNumberOfLines(event.getOffset(), text) - 1;
+				LineShift shift = new LineShift(editLine, editLines, inserted - editLines, editAtLineStart);
+				
+				if (shift.delta != 0){
+					synchronized (running) {
+						for (LineProvider provider : ranges.keySet()){
+							ranges.put(provider, shift.apply(ranges.get(provider)));
+						}
+						if (!started.isEmpty()){
+							shifts.add(shift);
+						}
+					}
+					postRedraw();
+				}
+			} catch (BadLocationException e) {
+				// NO OP: the ranges are recomputed below
+			}
+		}
+		
+		// the document may be changed outside of the display thread, where timerExec is not permitted
+		final Display display = isConnected() && !fControl.isDisposed() ? fControl.getDisplay() : Display.getDefault();
+		display.asyncExec(new Runnable() {
+			public void run() {
+				display.timerExec(DEBOUNCE_MILLIS, rerun);
+			}
+		});
+	}
+	
+	/**
+	 * The change in line numbers caused by an edit.
+	 */
+	private static final class LineShift {
+		/** The first line of the edit **/
+		private final int line;
+		/** The number of lines after the first line replaced by the edit **/
+		private final int replaced;
+		/** The number of lines added by the edit (negative if lines were removed) **/
+		private final int delta;
+		/** <code>true</code> iff the edit starts at the beginning of its first line **/
+		private final boolean atLineStart;
+		
+		private LineShift(int line, int replaced, int delta, boolean atLineStart) {
+			this.line = line;
+			this.replaced = replaced;
+			this.delta = delta;
+			this.atLineStart = atLineStart;
+		}
+		
+		/**
+		 * Returns <code>range</code> adjusted for the edit. Ranges after the edit are moved; ranges 
+		 * overlapping the edit are grown or shrunk. A range starting within the edit, or on a line
+		 * the edit starts at the beginning of, moves with its first line, but not before the edit.
+		 * @param range a line range, before the edit
+		 * @return the line range after the edit
+		 */
+		private ILineRange apply(ILineRange range) {
+			int start = range.getStartLine();
+			int end = end(range);
+			
+			if (end <= line){
+				return range;
+			} else if (start > line + replaced){
+				return new LineRange(start + delta, range.getNumberOfLines());
+			} else {
+				int shifted = start > line || (start == line && atLineStart) ? Math.max(line, start + delta) : start;
+				return new LineRange(shifted, Math.max(1, end + delta - shifted));
+			}
+		}
+		
+		private Collection<ILineRange> apply(Collection<ILineRange> ranges) {
+			List<ILineRange> result = Lists.newArrayListWithCapacity(ranges.size());
+			for (ILineRange range : ranges){
+				result.add(apply(range));
+			}
+			return result;
+		}
 	}
 
 
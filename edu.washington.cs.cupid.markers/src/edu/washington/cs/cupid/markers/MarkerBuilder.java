@@ -10,6 +10,7 @@
  ******************************************************************************/
 package edu.washington.cs.cupid.markers;
 
+import java.util.Collections;
 import java.util.Map;
 
 import org.eclipse.core.resources.IMarker;
@@ -72,6 +73,22 @@ public class MarkerBuilder implements IMarkerBuilder {
 		return this;
 	}
 	
+	/**
+	 * Returns the resource the marker is created on.
+	 * @return the resource the marker is created on
+	 */
+	public final IResource getResource() {
+		return resource;
+	}
+	
+	/**
+	 * Returns an unmodifiable view of the attributes of the marker.
+	 * @return the attributes of the marker
+	 */
+	public final Map<String, Object> getAttributes() {
+		return Collections.unmodifiableMap(attributes);
+	}
+	
 	@Override
 	public final IMarker create(final String type) throws CoreException {
 		IMarker marker = resource.createMarker(type);
@@ -10,6 +10,9 @@
  ******************************************************************************/
 package edu.washington.cs.cupid.markers.internal;
 
+import org.eclipse.core.runtime.ILog;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.Status;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.osgi.framework.BundleContext;
 
@@ -26,6 +29,8 @@ public final class Activator extends AbstractUIPlugin {
 
 	private static Activator plugin;
 	
+	private static ILog pluginLog;
+	
 	/**
 	 * Constructs the activator for the Cupid marker plug-in.
 	 */
@@ -38,6 +43,7 @@ public final class Activator extends AbstractUIPlugin {
 	public void start(final BundleContext context) throws Exception {
 		super.start(context);
 		plugin = this;
+		pluginLog = Platform.getLog(context.getBundle());
 		manager = new MarkerManager();
 		manager.start();
 	}
@@ -56,5 +62,14 @@ public final class Activator extends AbstractUIPlugin {
 	public static Activator getDefault() {
 		return plugin;
 	}
+	
+	/**
+	 * Log an error in the plugin's log.
+	 * @param msg localized error message
+	 * @param e the exception
+	 */
+	public void logError(final String msg, final Exception e) {
+		pluginLog.log(new Status(Status.ERROR, PLUGIN_ID, Status.ERROR, msg, e));			
+	}
 
 }
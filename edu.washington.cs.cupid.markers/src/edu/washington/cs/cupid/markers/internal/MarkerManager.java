@@ -11,7 +11,10 @@
 package edu.washington.cs.cupid.markers.internal;
 
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 
@@ -20,12 +23,31 @@ import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IResourceChangeEvent;
 import org.eclipse.core.resources.IResourceChangeListener;
 import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRunnable;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.ui.IEditorPart;
+import org.eclipse.ui.IEditorReference;
+import org.eclipse.ui.IWorkbench;
+import org.eclipse.ui.IWorkbenchPage;
+import org.eclipse.ui.IWorkbenchWindow;
+import org.eclipse.ui.PartInitException;
+import org.eclipse.ui.PlatformUI;
 
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.collect.Table;
 import com.google.common.reflect.TypeToken;
 
 import edu.washington.cs.cupid.CapabilityExecutor;
@@ -42,22 +64,36 @@ import edu.washington.cs.cupid.markers.MarkerBuilder;
 import edu.washington.cs.cupid.utility.ResourceDeltaVisitor;
 
 /**
- * Manages markers created with Cupid.
+ * Manages markers created with Cupid. When a resource changes, the markers that each capability created for the
+ * resource are reconciled with the capability's new result: markers whose resource and attributes are unchanged 
+ * are kept, changed markers are updated in place, and the remaining markers are created or deleted. The changes
+ * for each result are applied in a single workspace operation. Marker computations are scheduled by a 
+ * {@link MarkerScheduler}.
  * @author Todd Schiller
  */
 public final class MarkerManager {
 	
-	// TODO manage deleted resources
-	
-	private final HashMap<IResource, Set<IMarker>> markers = Maps.newHashMap();
+	/**
+	 * Changed resource -> capability -> the markers created by the capability for the resource.
+	 */
+	private final Table<IResource, ICapability, List<IMarker>> markers = HashBasedTable.create();
 	
 	private final MarkerListener listener;
 	
+	private final MarkerScheduler scheduler;
+	
+	/**
+	 * The delay before computing markers for a changed resource (ms); restarted by each change.
+	 * @see MarkerScheduler#changed(IResource)
+	 */
+	private static final long DEBOUNCE_MILLIS = 500;
+	
 	/**
 	 * Construct the marker manager.
 	 */
 	public MarkerManager() {
 		listener = new MarkerListener();
+		scheduler = new MarkerScheduler();
 	}
 	
 	/**
@@ -72,86 +108,539 @@ public final class MarkerManager {
 	 */
 	public void stop() {
 		ResourcesPlugin.getWorkspace().removeResourceChangeListener(listener);
+		scheduler.cancel();
+		scheduler.cancelAll();
 	}
 	
-	private void deleteMarkers(final IResource resource) {
-		synchronized (markers) {
-			if (markers.containsKey(resource)) {
-				for (IMarker marker : markers.get(resource)) {
-					try {
+	/**
+	 * Replaces the markers <code>capability</code> created for <code>resource</code> with markers built 
+	 * by <code>builders</code>, in a single workspace operation.
+	 * @param resource the changed resource
+	 * @param capability the capability
+	 * @param builders the new markers
+	 */
+	private void reconcile(final IResource resource, final ICapability capability, final Collection<? extends IMarkerBuilder> builders) {
+		IWorkspace workspace = ResourcesPlugin.getWorkspace();
+		try {
+			workspace.run(new IWorkspaceRunnable() {
+				@Override
+				public void run(final IProgressMonitor monitor) throws CoreException {
+					synchronized (markers) {
+						List<IMarker> previous = markers.get(resource, capability);
+						List<IMarker> result = Lists.newArrayList();
+						boolean reconciled = false;
+						
+						try {
+							reconcileMarkers(previous, result);
+							reconciled = true;
+						} finally {
+							// if reconciliation failed, keep tracking the previous markers along with the markers created
+							Set<IMarker> tracked = Sets.newLinkedHashSet(result);
+							if (!reconciled && previous != null) {
+								tracked.addAll(previous);
+							}
+							
+							markers.remove(resource, capability);
+							if (!tracked.isEmpty()) {
+								markers.put(resource, capability, Lists.newArrayList(tracked));
+							}
+						}
+					}
+				}
+				
+				/**
+				 * Reconciles the <code>previous</code> markers with <code>builders</code>, adding the resulting markers 
+				 * to <code>result</code> as they are kept or created.
+				 * @param previous the markers previously created by the capability, or <code>null</code>
+				 * @param result the reconciled markers
+				 * @throws CoreException if a marker could not be created, updated, or deleted
+				 */
+				private void reconcileMarkers(final List<IMarker> previous, final List<IMarker> result) throws CoreException {
+					// existing markers, by resource and attributes
+					ListMultimap<List<Object>, IMarker> existing = ArrayListMultimap.create();
+					if (previous != null) {
+						for (IMarker marker : previous) {
+							if (marker.exists()) {
+								existing.put(identity(marker.getResource(), attributes(marker)), marker);
+							}
+						}
+					}
+					
+					// keep the unchanged markers
+					List<IMarkerBuilder> changed = Lists.newArrayList();
+					for (IMarkerBuilder builder : builders) {
+						List<IMarker> same = builder instanceof MarkerBuilder 
+								? existing.get(identity(((MarkerBuilder) builder).getResource(), ((MarkerBuilder) builder).getAttributes()))
+								: Collections.<IMarker>emptyList();
+						
+						if (same.isEmpty()) {
+							changed.add(builder);
+						} else {
+							result.add(same.remove(same.size() - 1));
+						}
+					}
+					
+					// update the remaining markers in place, creating markers as needed
+					ListMultimap<IResource, IMarker> unused = ArrayListMultimap.create();
+					for (IMarker marker : existing.values()) {
+						unused.put(marker.getResource(), marker);
+					}
+					
+					for (IMarkerBuilder builder : changed) {
+						List<IMarker> candidates = builder instanceof MarkerBuilder 
+								? unused.get(((MarkerBuilder) builder).getResource())
+								: Collections.<IMarker>emptyList();
+						
+						if (candidates.isEmpty()) {
+							result.add(builder.create(IMarker.PROBLEM));
+						} else {
+							IMarker marker = candidates.remove(candidates.size() - 1);
+							update(marker, ((MarkerBuilder) builder).getAttributes());
+							result.add(marker);
+						}
+					}
+					
+					for (IMarker marker : unused.values()) {
 						marker.delete();
-					} catch (CoreException e) {
-						// NO OP
 					}
 				}
-				markers.remove(resource);
-			}
+			}, workspace.getRuleFactory().markerRule(resource), IWorkspace.AVOID_UPDATE, null);
+		} catch (CoreException e) {
+			Activator.getDefault().logError("Error reconciling markers for resource " + resource.getName(), e);
 		}
 	}
 	
-	private void registerMarker(final IResource resource, final IMarker marker) {
-		synchronized (markers) {
-			if (!markers.containsKey(resource)) {
-				markers.put(resource, Sets.newHashSet(marker));
-			} else {
-				markers.get(resource).add(marker);
-			}
+	/**
+	 * Deletes the markers created for <code>removed</code> resources, or their members, and stops tracking them.
+	 * @param removed the removed resources
+	 */
+	private void purge(final Set<IResource> removed) {
+		if (removed.isEmpty()) {
+			return;
+		}
+		
+		IWorkspace workspace = ResourcesPlugin.getWorkspace();
+		try {
+			workspace.run(new IWorkspaceRunnable() {
+				@Override
+				public void run(final IProgressMonitor monitor) throws CoreException {
+					synchronized (markers) {
+						for (IResource resource : Sets.newHashSet(markers.rowKeySet())) {
+							for (IResource gone : removed) {
+								if (gone.getFullPath().isPrefixOf(resource.getFullPath())) {
+									for (List<IMarker> created : markers.row(resource).values()) {
+										for (IMarker marker : created) {
+											// markers on the removed resources were deleted with the resources
+											if (marker.exists()) {
+												marker.delete();
+											}
+										}
+									}
+									markers.row(resource).clear();
+									break;
+								}
+							}
+						}
+					}
+				}
+			}, null, IWorkspace.AVOID_UPDATE, null);
+		} catch (CoreException e) {
+			Activator.getDefault().logError("Error deleting markers for removed resources", e);
+		}
+	}
+	
+	/**
+	 * Sets the attributes of <code>marker</code> to <code>attributes</code>, removing any other attributes.
+	 * @param marker the marker
+	 * @param attributes the new attributes
+	 * @throws CoreException if the marker does not exist
+	 */
+	private static void update(final IMarker marker, final Map<String, Object> attributes) throws CoreException {
+		Set<String> names = Sets.newHashSet(attributes(marker).keySet());
+		names.addAll(attributes.keySet());
+		
+		String[] keys = names.toArray(new String[]{});
+		Object[] values = new Object[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			// setting an attribute to null removes the attribute
+			values[i] = attributes.get(keys[i]);
 		}
+		marker.setAttributes(keys, values);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> attributes(final IMarker marker) throws CoreException {
+		Map<String, Object> attributes = marker.getAttributes();
+		return attributes == null ? Collections.<String, Object>emptyMap() : attributes;
+	}
+	
+	private static List<Object> identity(final IResource resource, final Map<String, Object> attributes) {
+		return Lists.<Object>newArrayList(resource, Maps.newHashMap(attributes));
 	}
 	
 	private class MarkerListener implements IResourceChangeListener {
 		@Override
 		public void resourceChanged(final IResourceChangeEvent event) {
 			ResourceDeltaVisitor visitor = new ResourceDeltaVisitor(IResourceDelta.CONTENT | IResourceDelta.TYPE);
+			final Set<IResource> removed = Sets.newHashSet();
 			try {
 				event.getDelta().accept(visitor);
+				event.getDelta().accept(new IResourceDeltaVisitor() {
+					@Override
+					public boolean visit(final IResourceDelta delta) throws CoreException {
+						if (delta.getKind() == IResourceDelta.REMOVED) {
+							removed.add(delta.getResource());
+							return false;
+						}
+						return true;
+					}
+				});
 			} catch (CoreException e) {
 				return;
 			}
+			
+			purge(removed);
+			scheduler.removed(removed);
+			
+			for (IResource resource : visitor.getMatches()) {
+				scheduler.changed(resource);
+			}
+		}
+	}
+	
+	/**
+	 * The marker computations for a resource change; used as the job family of the computations.
+	 */
+	private final class Generation {
+		private final IResource resource;
+		
+		/**
+		 * The number of queued or running computations, plus one while the computations are being queued. 
+		 * Guarded by the scheduler.
+		 */
+		private int outstanding = 0;
+		
+		private Generation(final IResource resource) {
+			this.resource = resource;
+		}
+	}
+	
+	/**
+	 * A computation of the markers for a resource by a capability.
+	 */
+	private final class Computation {
+		private final Generation generation;
+		private final ICapability capability;
+		private final Object input;
+		
+		private Computation(final Generation generation, final ICapability capability, final Object input) {
+			this.generation = generation;
+			this.capability = capability;
+			this.input = input;
+		}
+	}
 	
+	/**
+	 * <p>Schedules the marker computations for changed resources. Changes are debounced, and a change 
+	 * supersedes the resource's queued and running computations: queued computations are dropped, and running 
+	 * computations are canceled.</p>
+	 * 
+	 * <p>Computations for resources in visible editors run first, followed by the resources in other open 
+	 * editors. At most {@link CupidPlatform#getParallelism()} computations run concurrently.</p>
+	 */
+	private final class MarkerScheduler extends Job {
+		
+		/**
+		 * The current generation for each resource with a queued or running computation. Guarded by <code>this</code>.
+		 */
+		private final Map<IResource, Generation> generations = Maps.newHashMap();
+		
+		/**
+		 * Resources changed since the scheduler last ran. Guarded by <code>this</code>.
+		 */
+		private final Set<IResource> changed = Sets.newLinkedHashSet();
+		
+		/**
+		 * Queued computations for resources in visible editors, in other open editors, and for other resources.
+		 * Guarded by <code>this</code>.
+		 */
+		private final List<LinkedList<Computation>> queues = Lists.newArrayList(
+				Lists.<Computation>newLinkedList(), Lists.<Computation>newLinkedList(), Lists.<Computation>newLinkedList());
+		
+		/**
+		 * The number of running computations. Guarded by <code>this</code>.
+		 */
+		private int running = 0;
+		
+		private MarkerScheduler() {
+			super("Schedule Cupid Markers");
+			setSystem(true);
+		}
+		
+		/**
+		 * Supersedes the computations for <code>resource</code>, and schedules new computations once the
+		 * resource stops changing.
+		 * @param resource the changed resource
+		 */
+		private void changed(final IResource resource) {
+			Generation previous;
+			synchronized (this) {
+				previous = generations.put(resource, new Generation(resource));
+				changed.add(resource);
+			}
+			
+			if (previous != null) {
+				Job.getJobManager().cancel(previous);
+			}
+			
+			// schedule(long) does nothing if the scheduler is already waiting or sleeping, so put it 
+			// back to sleep, and restart its delay
+			sleep();
+			wakeUp(DEBOUNCE_MILLIS);
+			schedule(DEBOUNCE_MILLIS);
+		}
+		
+		/**
+		 * Records that a computation of <code>generation</code> has finished, and stops tracking the generation
+		 * once all of its computations have finished, unless it has been superseded.
+		 * @param generation the generation
+		 */
+		private synchronized void finished(final Generation generation) {
+			generation.outstanding--;
+			if (generation.outstanding == 0 && generations.get(generation.resource) == generation) {
+				generations.remove(generation.resource);
+			}
+		}
+		
+		/**
+		 * Cancels the computations for the <code>removed</code> resources, and their members.
+		 * @param removed the removed resources
+		 */
+		private void removed(final Set<IResource> removed) {
+			List<Generation> superseded = Lists.newArrayList();
+			
+			synchronized (this) {
+				for (IResource resource : Sets.newHashSet(generations.keySet())) {
+					for (IResource gone : removed) {
+						if (gone.getFullPath().isPrefixOf(resource.getFullPath())) {
+							superseded.add(generations.remove(resource));
+							changed.remove(resource);
+							break;
+						}
+					}
+				}
+			}
+			
+			for (Generation generation : superseded) {
+				Job.getJobManager().cancel(generation);
+			}
+		}
+		
+		/**
+		 * Drops the queued computations, and cancels the running computations.
+		 */
+		private void cancelAll() {
+			List<Generation> superseded;
+			
+			synchronized (this) {
+				superseded = Lists.newArrayList(generations.values());
+				generations.clear();
+				changed.clear();
+				for (LinkedList<Computation> queue : queues) {
+					queue.clear();
+				}
+			}
+			
+			for (Generation generation : superseded) {
+				Job.getJobManager().cancel(generation);
+			}
+		}
+		
+		@Override
+		protected IStatus run(final IProgressMonitor monitor) {
+			List<IResource> resources;
+			synchronized (this) {
+				resources = Lists.newArrayList(changed);
+				changed.clear();
+			}
+			
+			Set<IResource> visible = Sets.newHashSet();
+			Set<IResource> open = Sets.newHashSet();
+			collectEditorResources(visible, open);
+			
 			ICapabilityRegistry registry = CupidPlatform.getCapabilityRegistry();
 			
-			for (IResource resource : visitor.getMatches()) {
-				deleteMarkers(resource);
+			for (IResource resource : resources) {
+				if (monitor.isCanceled()) {
+					return Status.CANCEL_STATUS;
+				}
 				
-				SortedSet<ICapability> capabilities = registry.getCapabilities(TypeToken.of(resource.getClass()), IMarkerBuilder.MARKER_RESULT);
-				for (ICapability capability : capabilities) {
-					// TODO also include generators?
-					
-					if (CapabilityUtil.isUnary(capability)
-						&& TypeManager.isCompatible(CapabilityUtil.unaryParameter(capability), resource)){
-								
-						Object adapted = TypeManager.getCompatible(CapabilityUtil.unaryParameter(capability), resource);	
-						asyncAddMarkers(capability, resource, adapted);
+				Generation generation;
+				synchronized (this) {
+					generation = generations.get(resource);
+					if (generation != null) {
+						generation.outstanding++;
+					}
+				}
+				if (generation == null) {
+					// the resource was removed
+					continue;
+				}
+				
+				int priority = visible.contains(resource) ? 0 : (open.contains(resource) ? 1 : 2);
+				try {
+					queue(generation, priority, registry);
+				} finally {
+					finished(generation);
+				}
+			}
+			
+			dispatch();
+			return Status.OK_STATUS;
+		}
+		
+		/**
+		 * Queues the computations of <code>generation</code>, and removes the markers of capabilities that
+		 * no longer apply to its resource.
+		 * @param generation the generation
+		 * @param priority the index of the queue for the computations
+		 * @param registry the capability registry
+		 */
+		private void queue(final Generation generation, final int priority, final ICapabilityRegistry registry) {
+			IResource resource = generation.resource;
+			
+			Set<ICapability> current = Sets.newHashSet();
+			
+			SortedSet<ICapability> capabilities = registry.getCapabilities(TypeToken.of(resource.getClass()), IMarkerBuilder.MARKER_RESULT);
+			for (ICapability capability : capabilities) {
+				// TODO also include generators?
+				
+				if (CapabilityUtil.isUnary(capability)
+					&& TypeManager.isCompatible(CapabilityUtil.unaryParameter(capability), resource)){
+							
+					Object adapted = TypeManager.getCompatible(CapabilityUtil.unaryParameter(capability), resource);	
+					synchronized (this) {
+						queues.get(priority).add(new Computation(generation, capability, adapted));
+						generation.outstanding++;
 					}
+					current.add(capability);
 				}
 			}
+			
+			// remove the markers of capabilities that no longer apply to the resource
+			Set<ICapability> stale;
+			synchronized (markers) {
+				stale = Sets.newHashSet(markers.row(resource).keySet());
+			}
+			stale.removeAll(current);
+			
+			for (ICapability capability : stale) {
+				reconcile(resource, capability, Collections.<IMarkerBuilder>emptyList());
+			}
 		}
-
-		private void asyncAddMarkers(final ICapability capability, final IResource resource, final Object input) {
-			ICapabilityArguments packed = CapabilityUtil.packUnaryInput(capability, input);
+		
+		/**
+		 * Starts queued computations, highest priority first, until the maximum number of computations are running.
+		 */
+		private synchronized void dispatch() {
+			int limit = CupidPlatform.getParallelism();
+			
+			for (LinkedList<Computation> queue : queues) {
+				while (running < limit && !queue.isEmpty()) {
+					Computation next = queue.removeFirst();
+					if (generations.get(next.generation.resource) == next.generation) {
+						running++;
+						boolean started = false;
+						try {
+							asyncReconcileMarkers(next);
+							started = true;
+						} finally {
+							if (!started) {
+								running--;
+								finished(next.generation);
+							}
+						}
+					}
+				}
+			}
+		}
+		
+		private void asyncReconcileMarkers(final Computation computation) {
+			final ICapability capability = computation.capability;
+			final IResource resource = computation.generation.resource;
+			ICapabilityArguments packed = CapabilityUtil.packUnaryInput(capability, computation.input);
 			
-			CapabilityExecutor.asyncExec(capability, packed, MarkerListener.this, new NullJobListener() {
+			CapabilityExecutor.asyncExec(capability, packed, computation.generation, new NullJobListener() {
 				@Override
 				public void done(final IJobChangeEvent event) {
-					CapabilityStatus result = (CapabilityStatus) event.getResult();
-
-					if (result.value() != null) {
-						Collection<MarkerBuilder> builders = (Collection<MarkerBuilder>) CapabilityUtil.singleOutputValue(capability, result);
+					try {
+						CapabilityStatus result = (CapabilityStatus) event.getResult();
 						
-						for (MarkerBuilder marker : builders) {
-							try {
-								registerMarker(resource, marker.create(IMarker.PROBLEM));
-							} catch (CoreException e) {
-								// NO OP
-							}
+						boolean superseded;
+						synchronized (MarkerScheduler.this) {
+							superseded = generations.get(resource) != computation.generation;
 						}
-					} else {
-						// TODO report error
+						
+						if (superseded || result.getSeverity() == IStatus.CANCEL) {
+							return;
+						} else if (result.value() != null) {
+							Collection<IMarkerBuilder> builders = (Collection<IMarkerBuilder>) CapabilityUtil.singleOutputValue(capability, result);
+							reconcile(resource, capability, builders);
+						} else {
+							// TODO report error
+							reconcile(resource, capability, Collections.<IMarkerBuilder>emptyList());
+						}
+					} finally {
+						synchronized (MarkerScheduler.this) {
+							running--;
+							finished(computation.generation);
+						}
+						dispatch();
 					}
 				}
 			});
 		}
 		
+		/**
+		 * Adds the resources in visible editors to <code>visible</code>, and the resources in other open
+		 * editors to <code>open</code>.
+		 * @param visible the resources in visible editors
+		 * @param open the resources in other open editors
+		 */
+		private void collectEditorResources(final Set<IResource> visible, final Set<IResource> open) {
+			if (!PlatformUI.isWorkbenchRunning() || PlatformUI.getWorkbench().getDisplay().isDisposed()) {
+				return;
+			}
+			
+			final IWorkbench workbench = PlatformUI.getWorkbench();
+			workbench.getDisplay().syncExec(new Runnable() {
+				@Override
+				public void run() {
+					for (IWorkbenchWindow window : workbench.getWorkbenchWindows()) {
+						for (IWorkbenchPage page : window.getPages()) {
+							for (IEditorReference reference : page.getEditorReferences()) {
+								IResource resource;
+								try {
+									resource = (IResource) reference.getEditorInput().getAdapter(IResource.class);
+								} catch (PartInitException e) {
+									continue;
+								}
+								
+								if (resource == null) {
+									continue;
+								}
+								
+								IEditorPart editor = reference.getEditor(false);
+								if (editor != null && page.isPartVisible(editor)) {
+									visible.add(resource);
+								} else {
+									open.add(resource);
+								}
+							}
+						}
+					}
+				}
+			});
+		}
 	}
 }
@@ -10,10 +10,13 @@
  ******************************************************************************/
 package edu.washington.cs.cupid.wizards.internal;
 
+import java.util.Collection;
 import java.util.EnumSet;
 import java.util.Map;
 import java.util.Set;
 
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
 import com.google.common.reflect.TypeParameter;
 import com.google.common.reflect.TypeToken;
 
@@ -38,6 +41,37 @@ public abstract class AbstractMapping<I, K, V> extends GenericLinearSerializable
 		this.valueType = valueType;
 	}
 		
+	/**
+	 * Returns the result of calling the nullary method <code>link</code> on <code>value</code>, or 
+	 * <code>value</code> if <code>link</code> is <code>null</code>. Methods are resolved once per class.
+	 * @param value the value
+	 * @param link the name of the method, or <code>null</code>
+	 * @return the result of calling the nullary method <code>link</code> on <code>value</code>
+	 * @throws Exception if the method cannot be resolved or invoked
+	 */
+	protected static Object link(final Object value, final String link) throws Exception {
+		return link == null ? value : Accessors.invoke(value, link);
+	}
+	
+	/**
+	 * Indexes <code>values</code> by their link; values with a <code>null</code> link are not indexed.
+	 * The link of each value is computed once.
+	 * @param values the values
+	 * @param link the name of the link method, or <code>null</code> to index the values themselves
+	 * @return <code>values</code> indexed by their link
+	 * @throws Exception if a link method cannot be resolved or invoked
+	 */
+	protected static <T> Multimap<Object, T> index(final Collection<T> values, final String link) throws Exception {
+		Multimap<Object, T> result = HashMultimap.create();
+		for (T value : values) {
+			Object key = link(value, link);
+			if (key != null) {
+				result.put(key, value);
+			}
+		}
+		return result;
+	}
+	
 	@Override
 	public final TypeToken<I> getInputType() {
 		return inputType;
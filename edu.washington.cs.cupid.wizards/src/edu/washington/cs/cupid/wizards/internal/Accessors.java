@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Todd Schiller.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Todd Schiller - initial API, implementation, and documentation
+ ******************************************************************************/
+package edu.washington.cs.cupid.wizards.internal;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.collect.MapMaker;
+
+/**
+ * Resolves nullary accessor methods once per class, so that getters and mappings pay for reflective
+ * method lookup once per class instead of once per value.
+ * @author Todd Schiller (tws@cs.washington.edu)
+ */
+final class Accessors {
+
+	/**
+	 * Resolved accessors: Class -> Method Name -> Method. Classes are held weakly so that the map does not 
+	 * prevent their bundles from being unloaded; the methods, which refer to their classes, are held softly.
+	 */
+	private static final ConcurrentMap<Class<?>, ConcurrentMap<String, Method>> METHODS = 
+			new MapMaker().weakKeys().softValues().makeMap();
+	
+	private Accessors() {
+		// NO OP
+	}
+	
+	/**
+	 * Returns the public nullary method <code>name</code> of <code>clazz</code>, made accessible.
+	 * @param clazz the class
+	 * @param name the method name
+	 * @return the public nullary method <code>name</code> of <code>clazz</code>
+	 * @throws NoSuchMethodException if the class does not have such a method
+	 */
+	public static Method resolve(final Class<?> clazz, final String name) throws NoSuchMethodException {
+		ConcurrentMap<String, Method> methods = METHODS.get(clazz);
+		if (methods == null) {
+			ConcurrentMap<String, Method> fresh = new ConcurrentHashMap<String, Method>();
+			methods = METHODS.putIfAbsent(clazz, fresh);
+			if (methods == null) {
+				methods = fresh;
+			}
+		}
+		
+		Method method = methods.get(name);
+		if (method == null) {
+			method = clazz.getMethod(name);
+			if (!method.isAccessible()) {
+				method.setAccessible(true);
+			}
+			methods.put(name, method);
+		}
+		return method;
+	}
+	
+	/**
+	 * Returns the result of calling the public nullary method <code>name</code> on <code>value</code>.
+	 * @param value the receiver
+	 * @param name the method name
+	 * @return the result of calling the method on <code>value</code>
+	 * @throws Exception if the method cannot be resolved, or throws an exception
+	 */
+	public static Object invoke(final Object value, final String name) throws Exception {
+		return resolve(value.getClass(), name).invoke(value);
+	}
+}
@@ -10,14 +10,15 @@
  ******************************************************************************/
 package edu.washington.cs.cupid.wizards.internal;
 
-import java.lang.reflect.Method;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubProgressMonitor;
 
 import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 import com.google.common.reflect.TypeToken;
 
@@ -70,19 +71,6 @@ public class CapabilityMapping<I, K, V> extends AbstractMapping<I, K, V> impleme
 		return result;
 	}
 
-	private Object link(Object value, String valueLink) throws Exception {
-		if (valueLink == null) {
-			return value;
-		} else {
-			Method method = value.getClass().getMethod(valueLink);
-			if (!method.isAccessible()){
-				method.setAccessible(true);
-			}
-			return method.invoke(value);
-		}
-	}
-	
-	
 	@Override
 	public LinearJob<I, Map<K, Set<V>>> getJob(I input) {		
 		return new LinearJob<I, Map<K, Set<V>>>(this, input){
@@ -94,22 +82,28 @@ public class CapabilityMapping<I, K, V> extends AbstractMapping<I, K, V> impleme
 					CapabilityJob<?> keySubtask = inputGenerator.getJob(CapabilityUtil.packUnaryInput(inputGenerator, getInput()));
 					CapabilityJob<?> valueSubtask = valueGenerator.getJob(CapabilityUtil.packUnaryInput(valueGenerator, getInput()));
 
-					monitor.subTask("Generating Keys");
-					keySubtask.schedule();
-					keySubtask.join();
+					// generate the values in the background while generating the keys
+					monitor.subTask("Generating Keys and Values");
+					valueSubtask.schedule();
 					
-					CapabilityStatus keyStatus = (CapabilityStatus) keySubtask.getResult();
-					if (!keyStatus.isOK() || keyStatus.getException() != null){
-						throw keyStatus.getException();
+					Collection<K> keys;
+					try {
+						CapabilityStatus keyStatus = keySubtask.execute(new SubProgressMonitor(monitor, 10));
+						if (!keyStatus.isOK() || keyStatus.getException() != null){
+							throw keyStatus.getException();
+						}
+						keys = (Collection<K>) CapabilityUtil.singleOutputValue(inputGenerator, keyStatus);
+					} catch (Throwable t) {
+						valueSubtask.cancel();
+						throw t;
 					}
 					
-					Collection<K> keys = (Collection<K>) CapabilityUtil.singleOutputValue(inputGenerator, keyStatus);
-					monitor.worked(10);
-					
-					monitor.subTask("Generating Values");
-					valueSubtask.schedule();
 					valueSubtask.join();
 					
+					if (!(valueSubtask.getResult() instanceof CapabilityStatus)){
+						throw new InterruptedException("Capability Job was cancelled");
+					}
+					
 					CapabilityStatus status = (CapabilityStatus) valueSubtask.getResult();
 					if (!status.isOK() || status.getException() != null){
 						throw status.getException();
@@ -120,15 +114,13 @@ public class CapabilityMapping<I, K, V> extends AbstractMapping<I, K, V> impleme
 					
 					monitor.subTask("Linking Keys and Values");
 
+					// hash join: the link of each key and value is computed once
+					Multimap<Object, V> index = index(values, valueLink);
+					
 					Map<K, Set<V>> result = Maps.newHashMap();
 					for (K key : keys){
-						Set<V> collection = Sets.newHashSet();
-
-						for (V v : values){
-							if (key != null && link(key, keyLink).equals(link(v, valueLink))){
-								collection.add(v);
-							}
-						}
+						Object link = key != null ? link(key, keyLink) : null;
+						Set<V> collection = link != null ? Sets.newHashSet(index.get(link)) : Sets.<V>newHashSet();
 						result.put(key, collection);
 					}
 
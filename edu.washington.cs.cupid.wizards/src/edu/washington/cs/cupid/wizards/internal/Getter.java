@@ -10,7 +10,6 @@
  ******************************************************************************/
 package edu.washington.cs.cupid.wizards.internal;
 
-import java.lang.reflect.Method;
 import java.util.List;
 
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -63,11 +62,7 @@ public final class Getter<I, V> extends LinearSerializableCapability<I, V> imple
 					Object result = getInput();
 					
 					for (String field : fields){
-						Method method = result.getClass().getMethod(field);
-						if (!method.isAccessible()) {
-							method.setAccessible(true);
-						}
-						result = method.invoke(result);		
+						result = Accessors.invoke(result, field);
 						monitor.worked(1);
 					}
 					// TODO check the conversion
@@ -1,8 +1,16 @@
 package edu.washington.cs.cupid.wizards.internal;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubProgressMonitor;
+import org.eclipse.core.runtime.jobs.Job;
 
 import com.google.common.collect.Lists;
 import com.google.common.reflect.TypeParameter;
@@ -13,6 +21,7 @@ import edu.washington.cs.cupid.capability.CapabilityJob;
 import edu.washington.cs.cupid.capability.CapabilityStatus;
 import edu.washington.cs.cupid.capability.CapabilityUtil;
 import edu.washington.cs.cupid.capability.ICapability;
+import edu.washington.cs.cupid.capability.ICapability.Flag;
 import edu.washington.cs.cupid.capability.linear.GenericLinearSerializableCapability;
 import edu.washington.cs.cupid.capability.linear.LinearJob;
 import edu.washington.cs.cupid.capability.linear.LinearStatus;
@@ -55,27 +64,11 @@ public class LiftedCapability<I,V> extends GenericLinearSerializableCapability<L
 					
 					monitor.beginTask(getName(), input.size());
 					
-					List<V> result = Lists.newArrayList();
+					int parallelism = Math.min(CupidPlatform.getParallelism(), input.size());
 					
-					for (I elt : input){
-						if (monitor.isCanceled()){
-							throw new InterruptedException("Capability Job was cancelled");
-						}
-						
-						CapabilityJob<?> subtask = c.getJob(CapabilityUtil.packUnaryInput(c, elt));
-						subtask.schedule();
-						subtask.join();
-						
-						CapabilityStatus status = (CapabilityStatus) subtask.getResult();
-						
-						if (!status.isOK() || status.getException() != null){
-							throw status.getException();
-						}
-						
-						result.add((V) CapabilityUtil.singleOutputValue(c, status));
-						
-						monitor.worked(1);
-					}
+					List<V> result = c.getFlags().contains(Flag.PURE) && parallelism > 1
+							? parallel(c, input, parallelism, monitor)
+							: sequential(c, input, monitor);
 					
 					return LinearStatus.makeOk(getCapability(), result);
 
@@ -87,6 +80,92 @@ public class LiftedCapability<I,V> extends GenericLinearSerializableCapability<L
 			}
 		};
 	}
+	
+	/**
+	 * Returns the output of <code>c</code> for <code>elt</code>. The element's job is run in the calling
+	 * thread unless its scheduling rule requires that it be scheduled.
+	 */
+	private V apply(final ICapability c, final I elt, final IProgressMonitor monitor) throws Throwable {
+		CapabilityJob<?> subtask = c.getJob(CapabilityUtil.packUnaryInput(c, elt));
+		CapabilityStatus status = subtask.execute(monitor);
+		
+		if (!status.isOK() || status.getException() != null){
+			throw status.getException();
+		}
+		
+		return (V) CapabilityUtil.singleOutputValue(c, status);
+	}
+	
+	private List<V> sequential(final ICapability c, final List<I> input, final IProgressMonitor monitor) throws Throwable {
+		List<V> result = Lists.newArrayList();
+		
+		for (I elt : input){
+			if (monitor.isCanceled()){
+				throw new InterruptedException("Capability Job was cancelled");
+			}
+			result.add(apply(c, elt, new SubProgressMonitor(monitor, 1)));
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Applies <code>c</code> to the elements of <code>input</code> using <code>parallelism</code> worker
+	 * jobs; each worker takes the next unprocessed element until all elements are processed. The order of
+	 * the results matches the order of the input. Stops at the first failure, or when <code>monitor</code>
+	 * is canceled.
+	 */
+	private List<V> parallel(final ICapability c, final List<I> input, final int parallelism, final IProgressMonitor monitor) throws Throwable {
+		final Object[] result = new Object[input.size()];
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		
+		// elements report cancellation of the lifted job; progress is reported per element by the workers
+		final IProgressMonitor elementMonitor = new NullProgressMonitor() {
+			@Override
+			public boolean isCanceled() {
+				return monitor.isCanceled();
+			}
+		};
+		
+		List<Job> workers = Lists.newArrayList();
+		
+		for (int i = 0; i < parallelism; i++) {
+			Job worker = new Job(getName()) {
+				@Override
+				protected IStatus run(final IProgressMonitor workerMonitor) {
+					int index;
+					while (failure.get() == null && !monitor.isCanceled() && (index = next.getAndIncrement()) < result.length) {
+						try {
+							result[index] = apply(c, input.get(index), elementMonitor);
+						} catch (Throwable t) {
+							failure.compareAndSet(null, t);
+						}
+						
+						synchronized (monitor) {
+							monitor.worked(1);
+						}
+					}
+					return Status.OK_STATUS;
+				}
+			};
+			worker.setSystem(true);
+			worker.schedule();
+			workers.add(worker);
+		}
+		
+		for (Job worker : workers) {
+			worker.join();
+		}
+		
+		if (failure.get() != null) {
+			throw failure.get();
+		} else if (monitor.isCanceled()) {
+			throw new InterruptedException("Capability Job was cancelled");
+		}
+		
+		return (List<V>) Arrays.asList(result);
+	}
 
 	@Override
 	public TypeToken<List<I>> getInputType() {
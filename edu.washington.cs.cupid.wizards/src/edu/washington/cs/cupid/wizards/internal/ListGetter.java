@@ -12,10 +12,12 @@ package edu.washington.cs.cupid.wizards.internal;
 
 import java.lang.reflect.Method;
 import java.util.List;
+import java.util.Set;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.common.reflect.TypeParameter;
 import com.google.common.reflect.TypeToken;
 
@@ -54,24 +56,23 @@ public final class ListGetter<I,V> extends GenericLinearSerializableCapability<L
 					
 					List<V> result = Lists.newArrayList();
 					
-					for (I x : input) {
-						Method method = x.getClass().getMethod(field);
+					// methods whose return type has been checked
+					Set<Method> checked = Sets.newIdentityHashSet();
 					
-						if (!method.isAccessible()) {
-							method.setAccessible(true);
-						}
-						
-						
+					for (I x : input) {
+						Method method = Accessors.resolve(x.getClass(), field);
 						
-						if (TypeManager.isBoxedType(ListGetter.this.result) || 
-							ListGetter.this.result.isAssignableFrom(method.getGenericReturnType())) {
-							
-							Object out = method.invoke(x);
-							result.add((V) out);
-						} else {
-							throw new TypeException(TypeToken.of(method.getGenericReturnType()), ListGetter.this.result);
+						if (!checked.contains(method)) {
+							if (TypeManager.isBoxedType(ListGetter.this.result) || 
+								ListGetter.this.result.isAssignableFrom(method.getGenericReturnType())) {
+								checked.add(method);
+							} else {
+								throw new TypeException(TypeToken.of(method.getGenericReturnType()), ListGetter.this.result);
+							}
 						}
 						
+						result.add((V) method.invoke(x));
+						
 						monitor.worked(1);
 					}
 					
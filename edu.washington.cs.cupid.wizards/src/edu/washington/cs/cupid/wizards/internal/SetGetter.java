@@ -10,7 +10,6 @@
  ******************************************************************************/
 package edu.washington.cs.cupid.wizards.internal;
 
-import java.lang.reflect.Method;
 import java.util.Set;
 
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -52,13 +51,7 @@ public final class SetGetter<I,V> extends GenericLinearSerializableCapability<Se
 					Set<V> result = Sets.newHashSet();
 					
 					for (I x : input) {
-						Method method = x.getClass().getMethod(field);
-						
-						if (!method.isAccessible()) {
-							method.setAccessible(true);
-						}
-						
-						Object out = method.invoke(x);
+						Object out = Accessors.invoke(x, field);
 						// TODO check the conversion
 						result.add((V) out);
 						
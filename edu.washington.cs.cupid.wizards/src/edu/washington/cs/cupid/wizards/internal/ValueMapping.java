@@ -10,12 +10,12 @@
  ******************************************************************************/
 package edu.washington.cs.cupid.wizards.internal;
 
-import java.lang.reflect.Method;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubProgressMonitor;
 
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -62,15 +62,6 @@ public class ValueMapping<I,V> extends AbstractMapping<I,I,V> implements IDynami
 		}
 	}
 
-	private Object link(Object value, String valueLink) throws Exception {
-		if (valueLink == null){
-			return value;
-		} else {
-			Method method = value.getClass().getMethod(valueLink);
-			return method.invoke(value);
-		}
-	}
-
 	@Override
 	public LinearJob<I, Map<I, Set<V>>> getJob(I input) {
 		return new LinearJob<I, Map<I,Set<V>>>(this, input){
@@ -84,18 +75,13 @@ public class ValueMapping<I,V> extends AbstractMapping<I,I,V> implements IDynami
 					CapabilityJob<?> subtask = valueGenerator.getJob(new CapabilityArguments());
 					monitor.subTask("Generating Values");
 					
-					subtask.schedule();
-					subtask.join();
-					
-					CapabilityStatus status = (CapabilityStatus) subtask.getResult();
+					CapabilityStatus status = subtask.execute(new SubProgressMonitor(monitor, 50));
 					if (!status.isOK()){
 						throw status.getException();
 					}
 					
 					Collection<V> values = (Collection<V>) CapabilityUtil.singleOutputValue(valueGenerator, status);
 					
-					monitor.worked(50);
-					
 					monitor.subTask("Linking Key and Values");
 					Set<V> collection = Sets.newHashSet();
 					for (V v : values){
@@ -10,9 +10,16 @@
  ******************************************************************************/
 package edu.washington.cs.cupid;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IResourceChangeEvent;
@@ -21,8 +28,11 @@ import org.eclipse.core.resources.IResourceDelta;
 import org.eclipse.core.resources.IResourceDeltaVisitor;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubProgressMonitor;
 import org.eclipse.core.runtime.jobs.IJobChangeEvent;
 import org.eclipse.core.runtime.jobs.IJobChangeListener;
 import org.eclipse.core.runtime.jobs.Job;
@@ -30,14 +40,23 @@ import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.jface.util.IPropertyChangeListener;
 import org.eclipse.jface.util.PropertyChangeEvent;
 
+import com.google.common.base.Objects;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.collect.HashBasedTable;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
-import com.google.common.collect.Table;
 
+import edu.washington.cs.cupid.capability.CapabilityArguments;
+import edu.washington.cs.cupid.capability.CapabilityBatchJob;
 import edu.washington.cs.cupid.capability.CapabilityJob;
 import edu.washington.cs.cupid.capability.CapabilityStatus;
+import edu.washington.cs.cupid.capability.IBatchCapability;
 import edu.washington.cs.cupid.capability.ICapability;
 import edu.washington.cs.cupid.capability.ICapability.Flag;
 import edu.washington.cs.cupid.capability.ICapabilityArguments;
@@ -45,6 +64,9 @@ import edu.washington.cs.cupid.capability.ICapabilityOutputs;
 import edu.washington.cs.cupid.capability.exception.MalformedCapabilityException;
 import edu.washington.cs.cupid.internal.CupidActivator;
 import edu.washington.cs.cupid.internal.CupidJobStatus;
+import edu.washington.cs.cupid.internal.OutputWeigher;
+import edu.washington.cs.cupid.internal.PathIndex;
+import edu.washington.cs.cupid.internal.PersistentResultCache;
 import edu.washington.cs.cupid.internal.SchedulingRuleRegistry;
 import edu.washington.cs.cupid.jobs.ISchedulingRuleRegistry;
 import edu.washington.cs.cupid.jobs.JobManager;
@@ -65,34 +87,61 @@ import edu.washington.cs.cupid.preferences.PreferenceConstants;
  */
 public final class CapabilityExecutor implements IResourceChangeListener, IPropertyChangeListener {
 
-	// TODO clean up locks
+	// The result cache and the job tables are concurrent; no global lock is held while looking up
+	// results or while walking resource deltas, so invalidation does not block unrelated requests.
 	
 	/**
 	 * <code>true</code> iff job status should be logged.
 	 */
-	private boolean logJobStatus;
+	private volatile boolean logJobStatus;
 	
 	/**
 	 * <code>true</code> iff cache status (e.g., hits and misses) should be logged.
 	 */
-	private boolean logCacheStatus;
+	private volatile boolean logCacheStatus;
 	
 	/**
-	 * Cupid result caches: Input -> { Capability -> Result }.
+	 * Cupid result cache: (Input, Capability) -> Result. Replaced when the cache preferences change.
 	 */
-	private final Cache<ICapabilityArguments, Cache<ICapability, ICapabilityOutputs>> resultCaches;
+	private volatile Cache<ResultKey, ICapabilityOutputs> resultCache;
 	
 	/**
-	 * Running jobs: Input -> { Capability -> Job }.
+	 * Second-level cache of results stored on disk, or <code>null</code> if results are not persisted.
 	 */
-	private final Table<ICapabilityArguments, ICapability, CapabilityJob<?>> running;
+	private volatile PersistentResultCache persistentCache;
 	
 	/**
-	 * Jobs that have been canceled <i>by this executor</i>.
+	 * Monitor lock for replacing the result cache, and for writes to the result cache, so that writes are
+	 * not lost while the entries are copied to a replacement cache.
 	 */
-	private final Set<CapabilityJob<?>> canceling;
+	private final Object cacheMonitor = new Object();
 	
-	private final Set<IInvalidationListener> cacheListeners = Sets.newIdentityHashSet();
+	/**
+	 * Rebuilds the result cache when the cache preferences change.
+	 */
+	private final CacheRebuildJob cacheRebuilder = new CacheRebuildJob();
+	
+	/**
+	 * Running shared computations: (Input, Capability) -> Job.
+	 */
+	private final ConcurrentMap<ResultKey, SharedJob> running;
+	
+	/**
+	 * Workspace dependencies of the cached results, computed once when a result is cached.
+	 */
+	private final PathIndex<ResultKey> cacheDependencies = new PathIndex<ResultKey>();
+	
+	/**
+	 * Workspace dependencies of the running shared computations.
+	 */
+	private final PathIndex<ResultKey> runningDependencies = new PathIndex<ResultKey>();
+	
+	/**
+	 * Result cache hits and misses for each capability: Capability -> {hits, misses}.
+	 */
+	private final ConcurrentMap<ICapability, AtomicLong[]> capabilityStats = new MapMaker().weakKeys().makeMap();
+	
+	private final Set<IInvalidationListener> cacheListeners = new CopyOnWriteArraySet<IInvalidationListener>();
 	
 	private final JobManager manager = new JobManager();
 	
@@ -107,20 +156,40 @@ public final class CapabilityExecutor implements IResourceChangeListener, IPrope
 	private static final Object INSTANCE_MONITOR = new Object();
 	
 	private final JobResultCacher cacher = new JobResultCacher();
+	private final CacheRemovalListener removalListener = new CacheRemovalListener();
 	private final JobLogger logger = new JobLogger();
-	private final JobReaper reaper = new JobReaper();
 	private final ISchedulingRuleRegistry scheduler = new SchedulingRuleRegistry();
 
-	private static final CapabilityCacheFactory CACHE_FACTORY = new CapabilityCacheFactory();
+	private static final OutputWeigher WEIGHER = new OutputWeigher();
+	
+	private static final long BYTES_PER_MEGABYTE = 1024 * 1024;
+	
+	/**
+	 * Delay for which requester jobs sleep while waiting for a shared computation; requester
+	 * jobs are woken as soon as the computation completes.
+	 */
+	private static final long PARK_DELAY_IN_MILLIS = 60 * 60 * 1000;
+	
+	/**
+	 * Interval at which a synchronous request waiting for a shared computation checks its
+	 * progress monitor for cancellation.
+	 */
+	private static final long CANCEL_CHECK_INTERVAL_IN_MILLIS = 100;
+	
+	/**
+	 * Delay before rebuilding the result cache after a cache preference changes, so that the preferences
+	 * applied together are applied with a single rebuild.
+	 */
+	private static final long CACHE_REBUILD_DELAY_IN_MILLIS = 100;
 	
 	private CapabilityExecutor() {
-		resultCaches = CacheBuilder.newBuilder().build();
-		running = HashBasedTable.create();
-		canceling = Sets.newIdentityHashSet();
+		running = new ConcurrentHashMap<ResultKey, SharedJob>();
 		
 		IPreferenceStore preferences = CupidActivator.getDefault().getPreferenceStore();
 		logJobStatus = preferences.getBoolean(PreferenceConstants.P_JOB_STATUS_LOGGING);
 		logCacheStatus = preferences.getBoolean(PreferenceConstants.P_CACHE_STATUS_LOGGING);
+		resultCache = buildCache(preferences);
+		persistentCache = buildPersistentCache(preferences);
 		preferences.addPropertyChangeListener(this);
 	}
 	
@@ -130,7 +199,82 @@ public final class CapabilityExecutor implements IResourceChangeListener, IPrope
 			logJobStatus = (Boolean) event.getNewValue();
 		} else if (event.getProperty().equals(PreferenceConstants.P_CACHE_STATUS_LOGGING)) {
 			logCacheStatus = (Boolean) event.getNewValue();
-		}	
+		} else if (event.getProperty().equals(PreferenceConstants.P_CACHE_BOUNDED)
+				|| event.getProperty().equals(PreferenceConstants.P_CACHE_MAXIMUM_SIZE_MB)
+				|| event.getProperty().equals(PreferenceConstants.P_CACHE_EXPIRE_MINUTES)) {
+			
+			// the preference page sets each cache preference separately; scheduling the job while it's 
+			// pending has no effect, so the changes are applied with a single rebuild
+			cacheRebuilder.schedule(CACHE_REBUILD_DELAY_IN_MILLIS);
+		} else if (event.getProperty().equals(PreferenceConstants.P_CACHE_PERSISTENT)) {
+			persistentCache = buildPersistentCache(CupidActivator.getDefault().getPreferenceStore());
+		}
+	}
+	
+	/**
+	 * Returns the persistent result cache, stored in the plug-in state location, or <code>null</code> 
+	 * if results should not be persisted.
+	 * @param preferences the preference store
+	 * @return the persistent result cache, or <code>null</code>
+	 */
+	private PersistentResultCache buildPersistentCache(final IPreferenceStore preferences) {
+		if (preferences.getBoolean(PreferenceConstants.P_CACHE_PERSISTENT)) {
+			return new PersistentResultCache(CupidActivator.getDefault().getStateLocation().append("results").toFile());
+		} else {
+			return null;
+		}
+	}
+	
+	/**
+	 * Builds a result cache according to the cache preferences. When the cache is bounded, results
+	 * are weighed by their estimated retained size, and the least-recently used results are ejected
+	 * first.
+	 * @param preferences the preference store
+	 * @return a new, empty, result cache
+	 */
+	private Cache<ResultKey, ICapabilityOutputs> buildCache(final IPreferenceStore preferences) {
+		CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().recordStats();
+		
+		if (preferences.getBoolean(PreferenceConstants.P_CACHE_BOUNDED)) {
+			builder.maximumWeight(preferences.getInt(PreferenceConstants.P_CACHE_MAXIMUM_SIZE_MB) * BYTES_PER_MEGABYTE);
+			
+			int expireMinutes = preferences.getInt(PreferenceConstants.P_CACHE_EXPIRE_MINUTES);
+			if (expireMinutes > 0) {
+				builder.expireAfterAccess(expireMinutes, TimeUnit.MINUTES);
+			}
+			
+			return builder
+					.<ResultKey, ICapabilityOutputs>weigher(WEIGHER)
+					.removalListener(removalListener)
+					.build();
+		} else {
+			return builder
+					.<ResultKey, ICapabilityOutputs>removalListener(removalListener)
+					.build();
+		}
+	}
+	
+	/**
+	 * Returns a snapshot of the result cache statistics (e.g., hits, misses, and ejections).
+	 * @return a snapshot of the result cache statistics
+	 */
+	public static CacheStats getCacheStats() {
+		return getInstance().resultCache.stats();
+	}
+	
+	/**
+	 * Returns a snapshot of the result cache hits and misses for <code>capability</code>, e.g., 
+	 * for a stage of a pipeline. Only the hit and miss counts of the result are meaningful.
+	 * @param capability the capability
+	 * @return a snapshot of the result cache hits and misses for <code>capability</code>
+	 */
+	public static CacheStats getCacheStats(final ICapability capability) {
+		AtomicLong[] counts = getInstance().capabilityStats.get(capability);
+		if (counts == null) {
+			return new CacheStats(0, 0, 0, 0, 0, 0);
+		} else {
+			return new CacheStats(counts[0].get(), counts[1].get(), 0, 0, 0, 0);
+		}
 	}
 	
 	/**
@@ -151,6 +295,7 @@ public final class CapabilityExecutor implements IResourceChangeListener, IPrope
 			if (instance != null) {
 				ResourcesPlugin.getWorkspace().removeResourceChangeListener(instance);
 				instance.manager.stop();
+				instance.cacheRebuilder.cancel();
 				instance = null;
 			}
 		}
@@ -165,48 +310,76 @@ public final class CapabilityExecutor implements IResourceChangeListener, IPrope
 	}
 	
 	/**
-	 * Initializes the default capability result cache for an input.
+	 * Result cache key: a capability and its input. The key holds a snapshot of the input, so that 
+	 * later changes to the caller's arguments cannot change the key's hash code while it is in use.
 	 * @author Todd Schiller (tws@cs.washington.edu)
 	 */
-	private static class CapabilityCacheFactory implements Callable<Cache<ICapability, ICapabilityOutputs>> {
+	private static final class ResultKey {
+		private final ICapabilityArguments input;
+		private final ICapability capability;
+		private final int hash;
+		
+		private ResultKey(final ICapabilityArguments input, final ICapability capability) {
+			this.input = new CapabilityArguments(input);
+			this.capability = capability;
+			this.hash = Objects.hashCode(this.input, capability);
+		}
+
 		@Override
-		public Cache<ICapability, ICapabilityOutputs> call() throws Exception {
-			return CacheBuilder
-					.newBuilder()
-					.build();
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj) {
+				return true;
+			} else if (!(obj instanceof ResultKey)) {
+				return false;
+			}
+			ResultKey other = (ResultKey) obj;
+			return Objects.equal(input, other.input) && Objects.equal(capability, other.capability);
 		}
 	}
 	
 	/**
 	 * Returns the cached result, or <code>null</code> if the result is not cached.
-	 * @param capability the capability
-	 * @param input the input
-	 * @param <I> input type
-	 * @param <T> output type
+	 * @param key the capability and input
 	 * @return the cached result, or <code>null</code> if the result is not cached
 	 */
-	private ICapabilityOutputs getIfPresent(final ICapability capability, final ICapabilityArguments input) {
-		synchronized (resultCaches) {
-			try {
-				Cache<ICapability, ICapabilityOutputs> cCache = resultCaches.get(input, CACHE_FACTORY);
-				
-				ICapabilityOutputs cached = cCache.getIfPresent(capability);
-				
-				if (cached == null) {
-					return null;
-				} else {
-					return cached;
-				} 
-			} catch (ExecutionException e) {
-				CupidActivator.getDefault().log(new CupidJobStatus(capability.getJob(input), Status.WARNING, "error creating capability cache"));
-				return null;
+	private ICapabilityOutputs getIfPresent(final ResultKey key) {
+		ICapabilityOutputs result = resultCache.getIfPresent(key);
+		
+		AtomicLong[] counts = capabilityStats.get(key.capability);
+		if (counts == null) {
+			AtomicLong[] fresh = new AtomicLong[] { new AtomicLong(), new AtomicLong() };
+			counts = capabilityStats.putIfAbsent(key.capability, fresh);
+			if (counts == null) {
+				counts = fresh;
 			}
 		}
+		counts[result != null ? 0 : 1].incrementAndGet();
+		
+		return result;
 	}
 	
 	
 	/**
-	 * Asynchronously execute a capability.
+	 * Returns <code>true</code> iff concurrent requests for <code>capability</code> can share
+	 * a single computation, i.e., the capability is pure and does not depend on external state.
+	 * @param capability the capability
+	 * @return <code>true</code> iff concurrent requests for <code>capability</code> can share
+	 * a single computation
+	 */
+	private static boolean isShareable(final ICapability capability) {
+		return capability.getFlags().contains(Flag.PURE) && !capability.getFlags().contains(Flag.TRANSIENT);
+	}
+	
+	/**
+	 * Asynchronously execute a capability. Concurrent requests for the same pure capability and 
+	 * input share a single computation; the computation is canceled only when every requester's
+	 * job has been canceled. The result of the job reported to <code>callback</code> is always a 
+	 * {@link CapabilityStatus}, including when the job is canceled before it runs.
 	 * @param capability the capability
 	 * @param input the input
 	 * @param <I> input type
@@ -217,66 +390,189 @@ public final class CapabilityExecutor implements IResourceChangeListener, IPrope
 	public static void asyncExec(final ICapability capability, final ICapabilityArguments input, final Object family, final IJobChangeListener callback) {
 		CapabilityExecutor executor = getInstance();
 		
-		final ICapabilityOutputs cached = executor.getIfPresent(capability, input);
+		ResultKey key = new ResultKey(input, capability);
+		
+		final ICapabilityOutputs cached = executor.getIfPresent(key);
+		
+		IJobChangeListener listener = new CapabilityStatusListener(callback);
 		
 		CapabilityJob<?> job;
 		
-		synchronized (executor.running) {
-			synchronized (executor.canceling) {
-				CapabilityJob<?> existing = executor.running.get(input, capability);
+		if (cached != null) { // CACHED
+			if (executor.logCacheStatus) {
+				CupidActivator.getDefault().log(new CupidJobStatus(capability.getJob(input), Status.INFO, "cache hit"));
+			}
+			job = new CapabilityJob<ICapability>(capability, input){
+				@Override
+				protected CapabilityStatus run(final IProgressMonitor monitor) {
+					try{
+						monitor.beginTask("Retrieve Cached Value", 1);
+						return CapabilityStatus.makeOk(cached);
+					} finally {
+						monitor.done();
+					}			
+				}
+			};
+					
+		} else if (isShareable(capability)) { // SHARE RUNNING JOB
+			RequesterJob requester = executor.attach(key);
+			requester.addJobChangeListener(listener);
+			
+			if (family != null) {
+				requester.addFamily(family);
+			}
+			
+			requester.park();
+			return;
+			
+		} else { // SPAWN NEW JOB	
+			job = executor.spawn(capability, input);
+		}
+		
+		job.addJobChangeListener(listener);
+		
+		if (family != null) {
+			job.addFamily(family);
+		}
+		
+		job.schedule();
+	}
+	
+	/**
+	 * Forwards job change events to a capability job listener, converting the result of finished jobs to a 
+	 * {@link CapabilityStatus}. A job that is canceled while it is sleeping or waiting, e.g., a requester 
+	 * waiting for a shared computation, is finished with the job manager's cancel status instead of a 
+	 * {@link CapabilityStatus}.
+	 * @author Todd Schiller (tws@cs.washington.edu)
+	 */
+	private static final class CapabilityStatusListener implements IJobChangeListener {
+		private final IJobChangeListener delegate;
+		
+		private CapabilityStatusListener(final IJobChangeListener delegate) {
+			this.delegate = delegate;
+		}
+		
+		@Override
+		public void aboutToRun(final IJobChangeEvent event) {
+			delegate.aboutToRun(event);
+		}
+
+		@Override
+		public void awake(final IJobChangeEvent event) {
+			delegate.awake(event);
+		}
 
-				if (cached != null) { // CACHED
-					if (executor.logCacheStatus) {
-						CupidActivator.getDefault().log(new CupidJobStatus(capability.getJob(input), Status.INFO, "cache hit"));
+		@Override
+		public void done(final IJobChangeEvent event) {
+			if (event.getResult() instanceof CapabilityStatus) {
+				delegate.done(event);
+			} else {
+				final CapabilityStatus result = CapabilityStatus.fromJobResult(event.getResult());
+				delegate.done(new IJobChangeEvent() {
+					@Override
+					public long getDelay() {
+						return event.getDelay();
 					}
-					job = new CapabilityJob<ICapability>(capability, input){
-						@Override
-						protected CapabilityStatus run(final IProgressMonitor monitor) {
-							try{
-								monitor.beginTask("Retrieve Cached Value", 1);
-								return CapabilityStatus.makeOk(cached);
-							} finally {
-								monitor.done();
-							}			
-						}
-					};
-							
-				} else if (existing != null && !executor.canceling.contains(existing)) { // ALREADY RUNNING
-					// FIXME this allows jobs to be spuriously killed by other requesters
-					// TODO the job might finish before we get a change to add the callback?
-					job = existing;
 
-					if (executor.logJobStatus) {
-						CupidActivator.getDefault().log(new CupidJobStatus(job, Status.INFO, "attaching new listener"));
+					@Override
+					public Job getJob() {
+						return event.getJob();
 					}
 
-				} else { // SPAWN NEW JOB	
-					
-					job = capability.getJob(input);
-					
-					if (job == null) {
-						job = new CapabilityJob<ICapability>(capability, input){
-							@Override
-							protected CapabilityStatus run(final IProgressMonitor monitor) {
-								try{
-									monitor.beginTask("Produce error", 1);
-									return CapabilityStatus.makeError(new MalformedCapabilityException(capability, "Capability returned null job"));
-								} finally {
-									monitor.done();
-								}			
-							}
-						};
-					} 
-					
-					if (!capability.getFlags().contains(Flag.TRANSIENT)) {
-						job.addJobChangeListener(executor.cacher);
+					@Override
+					public IStatus getResult() {
+						return result;
 					}
-					job.addJobChangeListener(executor.logger);
-					job.addJobChangeListener(executor.reaper);
-				}
+				});
 			}
 		}
+
+		@Override
+		public void running(final IJobChangeEvent event) {
+			delegate.running(event);
+		}
+
+		@Override
+		public void scheduled(final IJobChangeEvent event) {
+			delegate.scheduled(event);
+		}
+
+		@Override
+		public void sleeping(final IJobChangeEvent event) {
+			delegate.sleeping(event);
+		}
+	}
+	
+	/**
+	 * Synchronously execute a capability from within a running job, e.g., for a stage of a pipeline. 
+	 * As with {@link #asyncExec(ICapability, ICapabilityArguments, Object, IJobChangeListener)}, cached
+	 * results are reused, running computations are shared, and the result is cached for later requests.
+	 * If the capability is not already running, and its job's scheduling rule permits, the job is run
+	 * in the calling thread instead of being scheduled. Must not be called from the UI thread.
+	 * @param capability the capability
+	 * @param input the input
+	 * @param monitor the progress monitor; if it is canceled while waiting for a shared computation, 
+	 * the request is canceled
+	 * @return the result of the capability
+	 * @throws InterruptedException if the thread is interrupted while waiting for the result
+	 */
+	public static CapabilityStatus syncExec(final ICapability capability, final ICapabilityArguments input, final IProgressMonitor monitor) throws InterruptedException {
+		CapabilityExecutor executor = getInstance();
+		
+		ResultKey key = new ResultKey(input, capability);
 		
+		ICapabilityOutputs cached = executor.getIfPresent(key);
+		
+		if (cached != null) { // CACHED
+			return CapabilityStatus.makeOk(cached);
+		} else if (isShareable(capability) && executor.running.containsKey(key)) { // SHARE RUNNING JOB
+			RequesterJob requester = executor.attach(key);
+			requester.park();
+			return requester.await(monitor);
+		} 
+		
+		CapabilityJob<?> job = executor.spawn(capability, input);
+		
+		if (job.canRunInline()) { // RUN IN CALLING THREAD
+			SharedJob shared = null;
+			
+			if (isShareable(capability)) {
+				shared = executor.register(key, job);
+				
+				if (shared == null) { // SHARE JOB STARTED CONCURRENTLY
+					RequesterJob requester = executor.attach(key);
+					requester.park();
+					return requester.await(monitor);
+				}
+			}
+			
+			CapabilityStatus status = job.runInline(monitor);
+			
+			if (shared != null) {
+				shared.finish(status);
+			} else if (!capability.getFlags().contains(Flag.TRANSIENT)) {
+				executor.cache(job, status);
+			}
+			return status;
+		} else { // SPAWN NEW JOB
+			job.schedule();
+			job.join();
+			return CapabilityStatus.fromJobResult(job.getResult());
+		}
+	}
+	
+	/**
+	 * Asynchronously execute a capability for each of <code>inputs</code> using a single job. Cached results
+	 * are reused; if the capability is an {@link IBatchCapability}, the remaining inputs are computed 
+	 * together. When the job completes, the results are available from {@link CapabilityBatchJob#getResults()}.
+	 * @param capability the capability
+	 * @param inputs the inputs
+	 * @param family the job family (used for job cancellation)
+	 * @param callback the job listener
+	 * @return the scheduled job
+	 */
+	public static CapabilityBatchJob asyncExecAll(final ICapability capability, final List<? extends ICapabilityArguments> inputs, final Object family, final IJobChangeListener callback) {
+		CapabilityBatchJob job = new CapabilityBatchJob(capability, inputs);
 		job.addJobChangeListener(callback);
 		
 		if (family != null) {
@@ -284,6 +580,468 @@ public final class CapabilityExecutor implements IResourceChangeListener, IPrope
 		}
 		
 		job.schedule();
+		return job;
+	}
+	
+	/**
+	 * Synchronously execute a capability for each of <code>inputs</code> from within a running job. If the 
+	 * capability is an {@link IBatchCapability}, the inputs without cached or running results are computed 
+	 * together and shared as running computations, and their results are cached unless they are invalidated 
+	 * while they are being computed; otherwise, each input is executed as by 
+	 * {@link #syncExec(ICapability, ICapabilityArguments, IProgressMonitor)}.
+	 * @param capability the capability
+	 * @param inputs the inputs
+	 * @param monitor the progress monitor
+	 * @return the result for each input, in the same order as <code>inputs</code>
+	 * @throws InterruptedException if the thread is interrupted while waiting for a result
+	 */
+	public static List<CapabilityStatus> syncExecAll(final ICapability capability, final List<? extends ICapabilityArguments> inputs, final IProgressMonitor monitor) throws InterruptedException {
+		CapabilityStatus[] result = new CapabilityStatus[inputs.size()];
+		
+		try {
+			monitor.beginTask(capability.getName() != null ? capability.getName() : "Execute Capability", inputs.size());
+			
+			if (capability instanceof IBatchCapability) {
+				CapabilityExecutor executor = getInstance();
+				
+				List<Integer> missing = Lists.newArrayList();
+				List<ICapabilityArguments> batch = Lists.newArrayList();
+				List<SharedJob> computing = Lists.newArrayList();
+				Map<Integer, RequesterJob> requesters = Maps.newLinkedHashMap();
+				
+				for (int i = 0; i < inputs.size(); i++) {
+					ResultKey key = new ResultKey(inputs.get(i), capability);
+					ICapabilityOutputs cached = executor.getIfPresent(key);
+					
+					if (cached != null) { // CACHED
+						result[i] = CapabilityStatus.makeOk(cached);
+						monitor.worked(1);
+					} else if (isShareable(capability)) {
+						// register the computation so that it can be shared, and canceled by invalidation
+						SharedJob shared = executor.register(key, new BatchMemberJob(capability, key.input));
+						
+						if (shared == null) { // SHARE RUNNING JOB
+							RequesterJob requester = executor.attach(key);
+							requester.park();
+							requesters.put(i, requester);
+						} else {
+							missing.add(i);
+							batch.add(inputs.get(i));
+							computing.add(shared);
+						}
+					} else {
+						missing.add(i);
+						batch.add(inputs.get(i));
+						computing.add(null);
+					}
+				}
+				
+				if (!batch.isEmpty()) { // COMPUTE MISSING RESULTS TOGETHER
+					List<CapabilityStatus> computed = null;
+					try {
+						computed = ((IBatchCapability) capability).executeAll(batch, new SubProgressMonitor(monitor, batch.size()));
+					} finally {
+						// record the results, releasing the requesters of the shared computations even if the batch fails
+						for (int j = 0; j < batch.size(); j++) {
+							CapabilityStatus status = computed != null ? computed.get(j) : CapabilityStatus.makeCancelled();
+							result[missing.get(j)] = status;
+							
+							SharedJob shared = computing.get(j);
+							if (shared != null) {
+								// caches the result, unless it was invalidated while it was being computed
+								shared.finish(status);
+							} else if (!capability.getFlags().contains(Flag.TRANSIENT) && status.value() != null) {
+								executor.cache(capability, batch.get(j), status.value());
+							}
+						}
+					}
+				}
+				
+				for (Map.Entry<Integer, RequesterJob> entry : requesters.entrySet()) {
+					result[entry.getKey()] = entry.getValue().await(new SubProgressMonitor(monitor, 1));
+				}
+			} else {
+				for (int i = 0; i < inputs.size(); i++) {
+					result[i] = monitor.isCanceled() 
+							? CapabilityStatus.makeCancelled() 
+							: syncExec(capability, inputs.get(i), new SubProgressMonitor(monitor, 1));
+				}
+			}
+		} finally {
+			monitor.done();
+		}
+		
+		return Arrays.asList(result);
+	}
+	
+	/**
+	 * Creates a job that computes <code>capability</code> on <code>input</code>.
+	 * @param capability the capability
+	 * @param input the input
+	 * @return a job that computes <code>capability</code> on <code>input</code>
+	 */
+	private CapabilityJob<?> spawn(final ICapability capability, final ICapabilityArguments input) {
+		CapabilityJob<?> job = capability.getJob(input);
+		
+		if (job == null) {
+			job = new CapabilityJob<ICapability>(capability, input){
+				@Override
+				protected CapabilityStatus run(final IProgressMonitor monitor) {
+					try{
+						monitor.beginTask("Produce error", 1);
+						return CapabilityStatus.makeError(new MalformedCapabilityException(capability, "Capability returned null job"));
+					} finally {
+						monitor.done();
+					}			
+				}
+			};
+		} else {
+			PersistentResultCache persistent = persistentCache;
+			PersistentResultCache.Entry entry = persistent != null ? persistent.locate(capability, input) : null;
+			if (entry != null) {
+				job = new PersistedJob(job, persistent, entry);
+			}
+		}
+		
+		if (!capability.getFlags().contains(Flag.TRANSIENT)) {
+			job.addJobChangeListener(cacher);
+		}
+		job.addJobChangeListener(logger);
+		return job;
+	}
+	
+	/**
+	 * Returns a new requester job for the shared computation of <code>key</code>, starting 
+	 * the computation if it is not already running.
+	 * @param key the capability and input
+	 * @return a new requester job for the shared computation
+	 */
+	private RequesterJob attach(final ResultKey key) {
+		while (true) {
+			SharedJob shared = running.get(key);
+			boolean created = false;
+			
+			if (shared == null) {
+				SharedJob fresh = new SharedJob(key, spawn(key.capability, key.input));
+				shared = running.putIfAbsent(key, fresh);
+				if (shared == null) {
+					shared = fresh;
+					created = true;
+				}
+			}
+			
+			RequesterJob requester = shared.attach();
+			
+			if (requester != null) {
+				if (created) {
+					runningDependencies.add(key, key.input.getArguments().values(), scheduler);
+					shared.start();
+				} else if (logJobStatus) {
+					CupidActivator.getDefault().log(new CupidJobStatus(shared.job, Status.INFO, "attaching new requester"));
+				}
+				return requester;
+			}
+			
+			// the shared computation was canceled after it was looked up
+			running.remove(key, shared);
+		}
+	}
+	
+	/**
+	 * Registers <code>job</code>, whose result the caller will compute in the calling thread, as the shared 
+	 * computation of <code>key</code>. Requests for <code>key</code> made while the result is being computed 
+	 * wait for it; the caller reports the result with {@link SharedJob#finish(IStatus)}.
+	 * @param key the capability and input
+	 * @param job the job that computes the result for <code>key</code>
+	 * @return the shared computation, or <code>null</code> if a computation of <code>key</code> is already running
+	 */
+	private SharedJob register(final ResultKey key, final CapabilityJob<?> job) {
+		SharedJob fresh = new SharedJob(key, job);
+		
+		// the caller is a requester, so that canceling the other requesters does not cancel the computation
+		fresh.requesters++;
+		
+		if (running.putIfAbsent(key, fresh) != null) {
+			return null;
+		}
+		runningDependencies.add(key, key.input.getArguments().values(), scheduler);
+		return fresh;
+	}
+	
+	/**
+	 * A computation shared by one or more requesters. The computation is canceled when every
+	 * requester has been canceled; requesters are woken when the computation completes.
+	 * @author Todd Schiller (tws@cs.washington.edu)
+	 */
+	private final class SharedJob extends NullJobListener {
+		private final ResultKey key;
+		private final CapabilityJob<?> job;
+		
+		private final List<RequesterJob> waiting = Lists.newArrayList();
+		private int requesters = 0;
+		private boolean done = false;
+		private boolean canceled = false;
+		private IStatus result = null;
+		
+		private final NullJobListener releaser = new NullJobListener() {
+			@Override
+			public void done(final IJobChangeEvent event) {
+				release((RequesterJob) event.getJob());
+			}
+		};
+		
+		private SharedJob(final ResultKey key, final CapabilityJob<?> job) {
+			this.key = key;
+			this.job = job;
+			
+			// the result is cached by finish(IStatus), unless the computation was canceled
+			job.removeJobChangeListener(cacher);
+		}
+		
+		/**
+		 * Returns a new requester for the computation, or <code>null</code> if the computation 
+		 * has been canceled.
+		 * @return a new requester for the computation, or <code>null</code>
+		 */
+		private synchronized RequesterJob attach() {
+			if (canceled) {
+				return null;
+			}
+			RequesterJob requester = new RequesterJob(this);
+			requester.addJobChangeListener(releaser);
+			requesters++;
+			waiting.add(requester);
+			return requester;
+		}
+		
+		private void start() {
+			job.addJobChangeListener(this);
+			job.schedule();
+		}
+		
+		/**
+		 * Remove the computation from the table of running computations.
+		 */
+		private void retire() {
+			if (running.remove(key, this)) {
+				runningDependencies.remove(key);
+			}
+		}
+		
+		private synchronized boolean isDone() {
+			return done;
+		}
+		
+		/**
+		 * Returns the result of the completed computation.
+		 * @return the result of the completed computation
+		 */
+		private synchronized IStatus getResult() {
+			return result;
+		}
+		
+		private void release(final RequesterJob requester) {
+			boolean cancel;
+			synchronized (this) {
+				waiting.remove(requester);
+				requesters--;
+				cancel = requesters == 0 && !done && !canceled;
+				canceled |= cancel;
+			}
+			
+			if (cancel) {
+				retire();
+				if (logJobStatus) {
+					CupidActivator.getDefault().log(new CupidJobStatus(job, Status.INFO, "canceling job without requesters"));
+				}
+				job.cancel();
+			}
+		}
+		
+		/**
+		 * Cancel the computation on behalf of all requesters.
+		 */
+		private void cancel() {
+			synchronized (this) {
+				canceled = true;
+			}
+			retire();
+			job.cancel();
+		}
+		
+		@Override
+		public void done(final IJobChangeEvent event) {
+			finish(event.getResult());
+		}
+		
+		/**
+		 * Records the result of the computation, caches it unless the computation was canceled (e.g., because 
+		 * its result was invalidated while it was being computed), and wakes the requesters.
+		 * @param status the result of the computation
+		 */
+		private void finish(final IStatus status) {
+			List<RequesterJob> wake;
+			synchronized (this) {
+				// cache while holding the lock, so that the computation cannot be canceled between the check 
+				// and the write; invalidation cancels running computations before ejecting cached results
+				if (!canceled && status instanceof CapabilityStatus) {
+					cache(job, (CapabilityStatus) status);
+				}
+				
+				result = status;
+				done = true;
+				wake = Lists.newArrayList(waiting);
+			}
+			
+			retire();
+			
+			for (RequesterJob requester : wake) {
+				requester.complete();
+			}
+		}
+	}
+	
+	/**
+	 * A requester's view of a shared computation. The requester job sleeps until the computation
+	 * completes, and then reports the computation's result. Canceling a requester job does not
+	 * cancel the computation unless it is the last requester.
+	 * @author Todd Schiller (tws@cs.washington.edu)
+	 */
+	private static final class RequesterJob extends CapabilityJob<ICapability> {
+		private final SharedJob shared;
+		
+		/**
+		 * Released when the computation completes, or when the requester is canceled.
+		 */
+		private final CountDownLatch released = new CountDownLatch(1);
+		
+		private RequesterJob(final SharedJob shared) {
+			super(shared.key.capability, shared.key.input);
+			this.shared = shared;
+		}
+		
+		/**
+		 * Schedules the requester to sleep until the computation completes.
+		 */
+		private void park() {
+			schedule(PARK_DELAY_IN_MILLIS);
+			if (shared.isDone()) {
+				complete();
+			}
+		}
+		
+		/**
+		 * Releases the requester, and wakes it to report the computation's result.
+		 */
+		private void complete() {
+			released.countDown();
+			wakeUp();
+		}
+		
+		/**
+		 * Waits in the calling thread for the computation to complete. If <code>monitor</code> is canceled 
+		 * first, the requester is canceled.
+		 * @param monitor the progress monitor
+		 * @return the result of the computation, or a cancellation status
+		 * @throws InterruptedException if the thread is interrupted while waiting
+		 */
+		private CapabilityStatus await(final IProgressMonitor monitor) throws InterruptedException {
+			while (!released.await(CANCEL_CHECK_INTERVAL_IN_MILLIS, TimeUnit.MILLISECONDS)) {
+				if (monitor.isCanceled()) {
+					cancel();
+					return CapabilityStatus.makeCancelled();
+				}
+			}
+			return shared.isDone() ? CapabilityStatus.fromJobResult(shared.getResult()) : CapabilityStatus.makeCancelled();
+		}
+		
+		@Override
+		protected void canceling() {
+			released.countDown();
+		}
+		
+		@Override
+		protected CapabilityStatus run(final IProgressMonitor monitor) {
+			try {
+				monitor.beginTask("Retrieve Shared Value", 1);
+				
+				released.await();
+				
+				if (monitor.isCanceled() || !shared.isDone()) {
+					return CapabilityStatus.makeCancelled();
+				}
+				return CapabilityStatus.fromJobResult(shared.getResult());
+			} catch (InterruptedException ex) {
+				return CapabilityStatus.makeCancelled();
+			} finally {
+				monitor.done();
+			}
+		}
+	}
+	
+	/**
+	 * Stands in for the computation of a single input by a batch capability, so that the computation can be 
+	 * shared and canceled like a job. The job is never scheduled; the batch reports its result.
+	 * @author Todd Schiller (tws@cs.washington.edu)
+	 */
+	private static final class BatchMemberJob extends CapabilityJob<ICapability> {
+		private BatchMemberJob(final ICapability capability, final ICapabilityArguments input) {
+			super(capability, input);
+		}
+		
+		@Override
+		protected CapabilityStatus run(final IProgressMonitor monitor) {
+			return CapabilityStatus.makeCancelled();
+		}
+	}
+	
+	/**
+	 * Retrieves a result from the persistent cache, running the capability's job and storing its
+	 * result if no result is stored.
+	 * @author Todd Schiller (tws@cs.washington.edu)
+	 */
+	private static final class PersistedJob extends CapabilityJob<ICapability> {
+		private final CapabilityJob<?> delegate;
+		private final PersistentResultCache persistent;
+		private final PersistentResultCache.Entry entry;
+		
+		private PersistedJob(final CapabilityJob<?> delegate, final PersistentResultCache persistent, final PersistentResultCache.Entry entry) {
+			super(delegate.getCapability(), delegate.getInputs());
+			this.delegate = delegate;
+			this.persistent = persistent;
+			this.entry = entry;
+		}
+		
+		@Override
+		protected void canceling() {
+			delegate.cancel();
+		}
+		
+		@Override
+		protected CapabilityStatus run(final IProgressMonitor monitor) {
+			try {
+				monitor.beginTask("Retrieve Persisted Value", 1);
+				
+				ICapabilityOutputs stored = persistent.load(getCapability(), entry);
+				
+				if (stored != null) {
+					return CapabilityStatus.makeOk(stored);
+				} else if (monitor.isCanceled()) {
+					return CapabilityStatus.makeCancelled();
+				}
+				
+				CapabilityStatus status = delegate.execute(new SubProgressMonitor(monitor, 1));
+				
+				if (status.getCode() == Status.OK && status.value() != null) {
+					persistent.store(entry, status.value());
+				}
+				return status;
+			} catch (InterruptedException ex) {
+				return CapabilityStatus.makeCancelled();
+			} finally {
+				monitor.done();
+			}
+		}
 	}
 	
 	/**
@@ -293,36 +1051,56 @@ public final class CapabilityExecutor implements IResourceChangeListener, IPrope
 	private class InvalidationVisitor implements IResourceDeltaVisitor {
 		private Set<Object> invalidated = Sets.newIdentityHashSet();
 		
+		/**
+		 * The most recently visited removed resource whose stored results were pruned; deltas are visited 
+		 * in pre-order, so the removed members of the resource are visited next.
+		 */
+		private IPath removed = null;
+		
 		@Override
 		public boolean visit(final IResourceDelta delta) throws CoreException {
+			if (delta.getKind() == IResourceDelta.REMOVED && delta.getResource() != null
+					&& (removed == null || !removed.isPrefixOf(delta.getResource().getFullPath()))) {
+				// prune the stored results for the removed resource and its members, once per removed subtree
+				removed = delta.getResource().getFullPath();
+				PersistentResultCache persistent = persistentCache;
+				if (persistent != null) {
+					persistent.invalidate(delta.getResource());
+				}
+			}
+			
 			if (delta.getAffectedChildren().length == 0) {
 				IResource resource = delta.getResource();
 				if (resource != null && interesting(delta)) {
 					
-					// invalidate cache lines
-					Set<Object> invalidCacheEntries = Sets.newHashSet();
-					for (Object input : resultCaches.asMap().keySet()) {
-						if (resource.isConflicting(scheduler.getSchedulingRule(input))) {
-							invalidCacheEntries.add(input);
+					// cancel obsolete jobs before invalidating cache lines, so that a computation finishing 
+					// concurrently either sees that it was canceled or caches a result that is then ejected
+					for (ResultKey key : runningDependencies.conflicting(resource)) {
+						SharedJob shared = running.get(key);
+						if (shared != null) {
+							shared.cancel();
 						}
 					}
 					
+					// invalidate cache lines
+					Set<ResultKey> invalidCacheEntries = cacheDependencies.conflicting(resource);
+					
 					if (!invalidCacheEntries.isEmpty()) {
 						if (logCacheStatus) {
 							CupidActivator.getDefault().logInformation(
 								"Invalidating resource " + resource.getFullPath().toPortableString() + " ejects " + invalidCacheEntries.size() + " entries");
 						}
-						invalidated.addAll(invalidCacheEntries);
-						resultCaches.invalidateAll(invalidCacheEntries);
+						for (ResultKey key : invalidCacheEntries) {
+							invalidated.add(key.input);
+						}
+						synchronized (cacheMonitor) {
+							resultCache.invalidateAll(invalidCacheEntries);
+						}
 					}
 					
-					// cancel obsolete jobs
-					for (ICapabilityArguments input : running.rowKeySet()) {
-						if (resource.isConflicting(scheduler.getSchedulingRule(input))) {
-							for (CapabilityJob<?> job : running.row(input).values()) {
-								job.cancel();
-							}
-						}
+					PersistentResultCache persistent = persistentCache;
+					if (persistent != null) {
+						persistent.invalidate(resource);
 					}
 				}
 			}
@@ -341,25 +1119,17 @@ public final class CapabilityExecutor implements IResourceChangeListener, IPrope
 	@Override
 	public void resourceChanged(final IResourceChangeEvent event) {
 		if (event.getDelta() != null) {
-			synchronized (resultCaches) {
-				synchronized (running) {
-					synchronized (canceling) {
-						try {
-							InvalidationVisitor v = new InvalidationVisitor();
-							event.getDelta().accept(v);
-							
-							synchronized (cacheListeners) {
-								for (IInvalidationListener listener : cacheListeners) {
-									listener.onResourceChange(v.invalidated, event);
-								}
-							}
-							
-						} catch (CoreException e) {
-							CupidActivator.getDefault().logError("Error invalidating cache result", e);
-							throw new RuntimeException("Error invalidating result cache", e);
-						}
-					}
+			try {
+				InvalidationVisitor v = new InvalidationVisitor();
+				event.getDelta().accept(v);
+				
+				for (IInvalidationListener listener : cacheListeners) {
+					listener.onResourceChange(v.invalidated, event);
 				}
+				
+			} catch (CoreException e) {
+				CupidActivator.getDefault().logError("Error invalidating cache result", e);
+				throw new RuntimeException("Error invalidating result cache", e);
 			}
 		}
 	}
@@ -368,43 +1138,100 @@ public final class CapabilityExecutor implements IResourceChangeListener, IPrope
 		@Override
 		public void done(final IJobChangeEvent event) {
 			CapabilityJob<?> job = (CapabilityJob<?>) event.getJob();
-			synchronized (resultCaches) {
-				ICapabilityOutputs value = ((CapabilityStatus) job.getResult()).value();
-				
-				if (value != null) {
-					if (logCacheStatus) {
-						CupidActivator.getDefault().log(new CupidJobStatus(job, Status.INFO, "caching result\t" + job.getCapability().hashCode()));
-					}
-					
-					try {
-						if (job.getInputs() != null) {
-							ICapability capability = job.getCapability();
-							
-							resultCaches
-								.get(job.getInputs(), CACHE_FACTORY)
-								.put(capability, value);
-						}
-					} catch (Exception e) {
-						CupidActivator.getDefault().logError("Error adding cache result", e);
-					}
-				}
+			if (job.getResult() instanceof CapabilityStatus) {
+				cache(job, (CapabilityStatus) job.getResult());
 			}
 		}
 	}	
 	
-	private class JobReaper extends NullJobListener {
-		@Override
-		public void done(final IJobChangeEvent event) {
-			synchronized (running) {
-				synchronized (canceling) {
-					CapabilityJob<?> job = (CapabilityJob<?>) event.getJob();
-					running.remove(job.getInputs(), job.getCapability());
-					canceling.add(job);
-				}
+	/**
+	 * Caches the result of <code>job</code>, if the job produced a value.
+	 * @param job the finished job
+	 * @param status the result of the job
+	 */
+	private void cache(final CapabilityJob<?> job, final CapabilityStatus status) {
+		ICapabilityOutputs value = status.value();
+		
+		if (value != null) {
+			if (logCacheStatus) {
+				CupidActivator.getDefault().log(new CupidJobStatus(job, Status.INFO, "caching result\t" + job.getCapability().hashCode()));
+			}
+			
+			if (job.getInputs() != null) {
+				cache(job.getCapability(), job.getInputs(), value);
 			}
 		}
 	}
+	
+	/**
+	 * Caches <code>value</code> as the result of <code>capability</code> on <code>input</code>.
+	 * @param capability the capability
+	 * @param input the input
+	 * @param value the result
+	 */
+	private void cache(final ICapability capability, final ICapabilityArguments input, final ICapabilityOutputs value) {
+		try {
+			ResultKey key = new ResultKey(input, capability);
+			
+			// index before caching so that an immediate ejection also removes the index entry
+			cacheDependencies.add(key, input.getArguments().values(), scheduler);
+			synchronized (cacheMonitor) {
+				resultCache.put(key, value);
+			}
+		} catch (Exception e) {
+			CupidActivator.getDefault().logError("Error adding cache result", e);
+		}
+	}
+	
+	/**
+	 * Replaces the result cache with a cache built from the current cache preferences, copying over the
+	 * cached results.
+	 * @author Todd Schiller (tws@cs.washington.edu)
+	 */
+	private class CacheRebuildJob extends Job {
+		
+		private CacheRebuildJob() {
+			super("Rebuild Cupid Result Cache");
+			setSystem(true);
+		}
 		
+		@Override
+		protected IStatus run(final IProgressMonitor monitor) {
+			synchronized (cacheMonitor) {
+				Cache<ResultKey, ICapabilityOutputs> old = resultCache;
+				resultCache = buildCache(CupidActivator.getDefault().getPreferenceStore());
+				resultCache.putAll(old.asMap());
+			}
+			return Status.OK_STATUS;
+		}
+	}
+	
+	/**
+	 * Removes the dependencies of results removed from the result cache, and logs results ejected 
+	 * due to size or expiration along with the cumulative cache statistics.
+	 * @author Todd Schiller (tws@cs.washington.edu)
+	 */
+	private class CacheRemovalListener implements RemovalListener<ResultKey, ICapabilityOutputs> {
+		@Override
+		public void onRemoval(final RemovalNotification<ResultKey, ICapabilityOutputs> notification) {
+			if (notification.getKey() != null && notification.getCause() != RemovalCause.REPLACED) {
+				cacheDependencies.remove(notification.getKey());
+			}
+			
+			if (logCacheStatus && notification.wasEvicted() && notification.getKey() != null) {
+				CacheStats stats = resultCache.stats();
+				CacheStats compatibility = TypeManager.getCompatibilityCacheStats();
+				CupidActivator.getDefault().logInformation(
+						"Ejecting result of " + notification.getKey().capability.getName() 
+						+ " (" + notification.getCause() + ")"
+						+ "\thits: " + stats.hitCount() 
+						+ "\tmisses: " + stats.missCount() 
+						+ "\tejections: " + stats.evictionCount()
+						+ "\ttype compatibility hit rate: " + String.format("%.2f", compatibility.hitRate()));
+			}
+		}
+	}
+	
 	private class JobLogger implements IJobChangeListener {
 
 		private void log(final Job job, final String message) {
@@ -448,18 +1275,14 @@ public final class CapabilityExecutor implements IResourceChangeListener, IPrope
 	 * @param listener the listener
 	 */
 	public static void removeCacheListener(final IInvalidationListener listener) {
-		synchronized (getInstance().cacheListeners) {
-			getInstance().cacheListeners.remove(listener);
-		}
+		getInstance().cacheListeners.remove(listener);
 	}
 	
 	/**
 	 * @param listener the listener
 	 */
 	public static void addCacheListener(final IInvalidationListener listener) {
-		synchronized (getInstance().cacheListeners) {
-			getInstance().cacheListeners.add(listener);
-		}
+		getInstance().cacheListeners.add(listener);
 	}
 
 	public static JobManager getJobManager() {
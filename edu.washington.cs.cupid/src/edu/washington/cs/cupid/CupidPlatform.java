@@ -47,6 +47,15 @@ public final class CupidPlatform {
 		return new File(preferences.getString(PreferenceConstants.P_ARROW_DIR));
 	}
 	
+	/**
+	 * Returns the maximum number of list elements that capabilities should compute concurrently.
+	 * @return the maximum number of list elements that capabilities should compute concurrently
+	 */
+	public static int getParallelism() {
+		IPreferenceStore preferences = CupidActivator.getDefault().getPreferenceStore();
+		return Math.max(1, preferences.getInt(PreferenceConstants.P_PARALLELISM));
+	}
+	
 	/**
 	 * Returns the Cupid capability registry.
 	 * @return the Cupid capability registry
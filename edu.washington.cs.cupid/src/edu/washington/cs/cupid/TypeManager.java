@@ -20,7 +20,13 @@ import java.util.Map;
 import java.util.Set;
 
 import com.google.common.base.Joiner;
+import com.google.common.base.Objects;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.google.common.reflect.TypeToken;
@@ -41,6 +47,88 @@ public final class TypeManager {
 	
 	private static final ITypeAdapterRegistry ADAPTER_REGISTRY = new TypeAdapterRegistry();
 	
+	private static final int MAXIMUM_MEMO_SIZE = 10000;
+	
+	/**
+	 * (Parameter Type, Argument Type) -> Compatibility. Cleared when type adapters are registered.
+	 */
+	private static final LoadingCache<TypePair, Compatibility> COMPATIBILITY = CacheBuilder.newBuilder()
+			.maximumSize(MAXIMUM_MEMO_SIZE)
+			.recordStats()
+			.build(new CacheLoader<TypePair, Compatibility>() {
+				@Override
+				public Compatibility load(final TypePair key) {
+					return computeCompatibility(key.parameterType, key.argumentType);
+				}
+			});
+	
+	/**
+	 * Class -> superclasses and interfaces, excluding {@link Object}, in breadth-first order.
+	 */
+	private static final LoadingCache<Class<?>, Set<Class<?>>> HIERARCHY = CacheBuilder.newBuilder()
+			.weakKeys()
+			.build(new CacheLoader<Class<?>, Set<Class<?>>>() {
+				@Override
+				public Set<Class<?>> load(final Class<?> key) {
+					return ImmutableSet.copyOf(computeClassesBfs(key));
+				}
+			});
+	
+	/**
+	 * A (parameter type, argument type) pair.
+	 */
+	private static final class TypePair {
+		private final TypeToken<?> parameterType;
+		private final TypeToken<?> argumentType;
+		
+		private TypePair(final TypeToken<?> parameterType, final TypeToken<?> argumentType) {
+			this.parameterType = parameterType;
+			this.argumentType = argumentType;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj) {
+				return true;
+			} else if (!(obj instanceof TypePair)) {
+				return false;
+			}
+			TypePair other = (TypePair) obj;
+			return parameterType.equals(other.parameterType) && argumentType.equals(other.argumentType);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(parameterType, argumentType);
+		}
+	}
+	
+	/**
+	 * Whether arguments of a type can be supplied for a parameter, and how.
+	 */
+	private static final class Compatibility {
+		/**
+		 * <code>true</code> iff the argument can be supplied.
+		 */
+		private final boolean compatible;
+		
+		/**
+		 * <code>true</code> iff the argument can be supplied without adapting it.
+		 */
+		private final boolean direct;
+		
+		/**
+		 * The adapter from the argument type to the parameter type, or <code>null</code>.
+		 */
+		private final ITypeAdapter<?, ?> adapter;
+		
+		private Compatibility(final boolean compatible, final boolean direct, final ITypeAdapter<?, ?> adapter) {
+			this.compatible = compatible;
+			this.direct = direct;
+			this.adapter = adapter;
+		}
+	}
+	
 	private TypeManager() {
 		// NO OP
 	}
@@ -74,6 +162,10 @@ public final class TypeManager {
 	}
 	
 	private static Set<Class<?>> getClassesBfs(Class<?> clazz) {
+		return HIERARCHY.getUnchecked(clazz);
+	}
+	
+	private static Set<Class<?>> computeClassesBfs(Class<?> clazz) {
 		// adapted from: http://stackoverflow.com/questions/9797212/finding-the-nearest-common-superclass-or-superinterface-of-a-collection-of-cla
 		
 		Set<Class<?>> classes = Sets.newLinkedHashSet();
@@ -96,6 +188,18 @@ public final class TypeManager {
 	    return classes;
 	}
 
+	/**
+	 * Returns <code>clazz</code> and its superclasses and interfaces, including {@link Object}, in
+	 * breadth-first order.
+	 * @param clazz the class
+	 * @return <code>clazz</code> and its superclasses and interfaces
+	 */
+	public static Set<Class<?>> getSupertypes(final Class<?> clazz) {
+		Set<Class<?>> result = Sets.newLinkedHashSet(getClassesBfs(clazz));
+		result.add(Object.class);
+		return result;
+	}
+	
 	/**
 	 * Returns the common set of superclasses sorted by distance from the first class?
 	 * @param classes
@@ -201,32 +305,51 @@ public final class TypeManager {
 	 * for <code>capability</code>
 	 */
 	public static boolean isCompatible(final ICapability.IParameter<?> parameter, final TypeToken<?> argumentType) {
-		
-		TypeToken<?> parameterType = parameter.getType();
-		
+		return COMPATIBILITY.getUnchecked(new TypePair(parameter.getType(), argumentType)).compatible;
+	}
+	
+	private static Compatibility computeCompatibility(final TypeToken<?> parameterType, final TypeToken<?> argumentType) {
 		if (parameterType.equals(TypeToken.of(Void.class))) {
 			// parameter does not expect any input
-			return true;
-	
+			return new Compatibility(true, true, null);
 		} else if (isJavaCompatible(parameterType, argumentType)) {
 			// Java's standard typing rules work
-			return true;	
-		} else if (parameterType.getType() instanceof ParameterizedType) {
+			return new Compatibility(true, true, null);
+		}
+		
+		ITypeAdapter<?, ?> adapter = ADAPTER_REGISTRY.getTypeAdapter(argumentType, parameterType);
+		
+		if (parameterType.getType() instanceof ParameterizedType) {
 			if (parameterType.getRawType().isAssignableFrom(argumentType.getRawType())) {
 				// check if type is all variables (i.e., fully generic)
 				for (Type arg : ((ParameterizedType) parameterType.getType()).getActualTypeArguments()) {
 					if (!(arg instanceof TypeVariable)) {
-						return parameterType.isAssignableFrom(argumentType);
+						return new Compatibility(parameterType.isAssignableFrom(argumentType), false, adapter);
 					}
 				}
-				return true;
+				return new Compatibility(true, false, adapter);
 			} else {
-				return false;
+				return new Compatibility(false, false, adapter);
 			}
 		} else {
-			return ADAPTER_REGISTRY.getTypeAdapter(argumentType, parameterType) != null;
+			return new Compatibility(adapter != null, false, adapter);
 		}
 	}
+	
+	/**
+	 * Clears the memoized compatibility results. Called when the type adapters change.
+	 */
+	public static void clearCompatibilityCache() {
+		COMPATIBILITY.invalidateAll();
+	}
+	
+	/**
+	 * Returns the hit and miss statistics for the memoized compatibility results.
+	 * @return the hit and miss statistics for the memoized compatibility results
+	 */
+	public static CacheStats getCompatibilityCacheStats() {
+		return COMPATIBILITY.stats();
+	}
 
 	/**
 	 * @param capability the capability
@@ -236,15 +359,13 @@ public final class TypeManager {
 	 * @see {@link TypeManager#isCompatible(ICapability, Object)}
 	 */
 	public static Object getCompatible(final ICapability.IParameter<?> parameter, final Object argument) {
-		if (parameter.getType().equals(TypeToken.of(Void.class))) {
-			return argument;
-		} else if (isJavaCompatible(parameter.getType(), TypeToken.of(argument.getClass()))) {
+		Compatibility compatibility = COMPATIBILITY.getUnchecked(new TypePair(parameter.getType(), TypeToken.of(argument.getClass())));
+		
+		if (compatibility.direct) {
 			return argument;
 		} else {
 			@SuppressWarnings("rawtypes")
-			ITypeAdapter adapter = ADAPTER_REGISTRY.getTypeAdapter(
-					TypeToken.of(argument.getClass()), 
-					parameter.getType());
+			ITypeAdapter adapter = compatibility.adapter;
 			
 			if (adapter == null) {
 				throw new IllegalArgumentException("Argument is not compatible with capability");
@@ -13,6 +13,7 @@ package edu.washington.cs.cupid.capability;
 import java.util.Collections;
 import java.util.Map;
 
+import com.google.common.base.Objects;
 import com.google.common.collect.Maps;
 
 import edu.washington.cs.cupid.capability.ICapability.IParameter;
@@ -91,4 +92,39 @@ public class CapabilityArguments implements ICapabilityArguments {
 		}	
 	}
 
+	/**
+	 * Arguments are equal iff they bind the same parameters to equal values, so that requests
+	 * constructed independently for the same input can share results.
+	 */
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		} else if (!(obj instanceof CapabilityArguments)) {
+			return false;
+		}
+		
+		Map<IParameter<?>, Object> other = ((CapabilityArguments) obj).arguments;
+		
+		if (arguments.size() != other.size()) {
+			return false;
+		}
+		
+		for (Map.Entry<IParameter<?>, Object> entry : arguments.entrySet()) {
+			if (!other.containsKey(entry.getKey()) || !Objects.equal(entry.getValue(), other.get(entry.getKey()))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = 0;
+		for (Map.Entry<IParameter<?>, Object> entry : arguments.entrySet()) {
+			Object value = entry.getValue();
+			hash += System.identityHashCode(entry.getKey()) ^ (value == null ? 0 : value.hashCode());
+		}
+		return hash;
+	}
 }
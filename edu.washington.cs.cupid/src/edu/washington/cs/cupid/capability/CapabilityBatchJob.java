@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Todd Schiller.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Todd Schiller - initial API, implementation, and documentation
+ ******************************************************************************/
+package edu.washington.cs.cupid.capability;
+
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+
+import edu.washington.cs.cupid.CapabilityExecutor;
+import edu.washington.cs.cupid.internal.CupidActivator;
+
+/**
+ * An Eclipse {@link Job} that computes a capability for a list of inputs. Cached results are reused, 
+ * and the remaining inputs are computed together if the capability is an {@link IBatchCapability}.
+ * @author Todd Schiller (tws@cs.washington.edu)
+ * @see {@link CapabilityExecutor#asyncExecAll(ICapability, List, Object, org.eclipse.core.runtime.jobs.IJobChangeListener)}
+ */
+public final class CapabilityBatchJob extends Job {
+
+	private final ICapability capability;
+	
+	private final List<ICapabilityArguments> inputs;
+	
+	private final Set<Object> families;
+	
+	private volatile List<CapabilityStatus> results = null;
+	
+	/**
+	 * A job that computes <code>capability</code> for each of <code>inputs</code>.
+	 * @param capability the capability
+	 * @param inputs the inputs
+	 */
+	public CapabilityBatchJob(final ICapability capability, final List<? extends ICapabilityArguments> inputs) {
+		super(capability.getName() != null ? capability.getName() : "Anonymous Cupid Capability");
+		this.capability = capability;
+		this.inputs = ImmutableList.copyOf(inputs);
+		this.families = Sets.newHashSet((Object) CupidActivator.getDefault(), capability);
+	}
+	
+	/**
+	 * @return the associated capability
+	 */
+	public ICapability getCapability() {
+		return capability;
+	}
+	
+	/**
+	 * @return the inputs
+	 */
+	public List<ICapabilityArguments> getInputs() {
+		return inputs;
+	}
+	
+	/**
+	 * Returns the result for each input, in the same order as the inputs, or <code>null</code> if the job
+	 * has not finished or was interrupted. The results for inputs that were not computed because the job 
+	 * was canceled are canceled statuses.
+	 * @return the result for each input, or <code>null</code>
+	 */
+	public List<CapabilityStatus> getResults() {
+		return results;
+	}
+	
+	/**
+	 * Add this job to <code>family</code>. Does nothing if the job is already a member
+	 * of the <code>family</code>.
+	 * @param family the family
+	 */
+	public void addFamily(final Object family) {
+		families.add(family);
+	}
+	
+	@Override
+	public boolean belongsTo(final Object family) {
+		return families.contains(family);
+	}
+	
+	@Override
+	protected IStatus run(final IProgressMonitor monitor) {
+		try {
+			results = CapabilityExecutor.syncExecAll(capability, inputs, monitor);
+			return Status.OK_STATUS;
+		} catch (InterruptedException ex) {
+			return Status.CANCEL_STATUS;
+		}
+	}
+}
@@ -13,8 +13,10 @@ package edu.washington.cs.cupid.capability;
 import java.util.Set;
 
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipse.core.runtime.jobs.Job;
 
+import com.google.common.base.Objects;
 import com.google.common.collect.Sets;
 
 import edu.washington.cs.cupid.internal.CupidActivator;
@@ -44,6 +46,10 @@ public abstract class CapabilityJob<T extends ICapability> extends Job {
 	
 	private final T capability;
 	
+	/**
+	 * Families other than the input's family. The input is not stored in the set, since its hash 
+	 * code changes if its arguments are modified.
+	 */
 	private final Set<Object> families;
 	
 	/**
@@ -55,7 +61,7 @@ public abstract class CapabilityJob<T extends ICapability> extends Job {
 		super(capability.getName() != null ? capability.getName() : CapabilityJob.ANONYMOUS_CUPID_CAPABILITY_NAME);
 		this.input = input;
 		this.capability = capability;
-		this.families = Sets.newHashSet((Object) input, CupidActivator.getDefault(), capability);
+		this.families = Sets.newHashSet((Object) CupidActivator.getDefault(), capability);
 	}
 	
 	/**
@@ -84,10 +90,63 @@ public abstract class CapabilityJob<T extends ICapability> extends Job {
 	
 	@Override
 	public final boolean belongsTo(final Object family) {
-		return families.contains(family);
+		return Objects.equal(input, family) || families.contains(family);
 	}
 	
 	@Override 
 	protected abstract CapabilityStatus run(IProgressMonitor monitor);
 	
+	/**
+	 * Returns <code>true</code> iff the job can be run in the calling thread, i.e., the job does not
+	 * have a scheduling rule, or its rule is contained in the rule held by the calling thread.
+	 * @return <code>true</code> iff the job can be run in the calling thread
+	 * @see {@link #runInline(IProgressMonitor)}
+	 */
+	public final boolean canRunInline() {
+		ISchedulingRule rule = getRule();
+		if (rule == null) {
+			return true;
+		}
+		ISchedulingRule current = Job.getJobManager().currentRule();
+		return current != null && current.contains(rule);
+	}
+	
+	/**
+	 * Runs the job in the calling thread, bypassing the job manager. This avoids scheduling the 
+	 * job and handing it off to a worker thread, e.g., for each stage of a pipeline. The job's 
+	 * listeners are not notified, and {@link Job#getResult()} is not set.
+	 * @param monitor the progress monitor
+	 * @return the result of the job
+	 * @throws IllegalStateException iff the job cannot be run in the calling thread
+	 * @see {@link #canRunInline()}
+	 */
+	public final CapabilityStatus runInline(final IProgressMonitor monitor) {
+		if (!canRunInline()) {
+			throw new IllegalStateException("Job scheduling rule conflicts with the calling thread's rule");
+		}
+		
+		try {
+			return run(monitor);
+		} catch (RuntimeException ex) {
+			return CapabilityStatus.makeError(ex);
+		}
+	}
+	
+	/**
+	 * Runs the job in the calling thread if possible; otherwise, schedules the job and waits for
+	 * it to finish.
+	 * @param monitor the progress monitor, used when the job runs in the calling thread
+	 * @return the result of the job
+	 * @throws InterruptedException if the calling thread is interrupted while waiting for the job
+	 */
+	public final CapabilityStatus execute(final IProgressMonitor monitor) throws InterruptedException {
+		if (canRunInline()) {
+			return runInline(monitor);
+		} 
+		
+		schedule();
+		join();
+		return CapabilityStatus.fromJobResult(getResult());
+	}
+	
 }
@@ -10,6 +10,7 @@
  ******************************************************************************/
 package edu.washington.cs.cupid.capability;
 
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 
 import edu.washington.cs.cupid.internal.CupidActivator;
@@ -103,4 +104,20 @@ public class CapabilityStatus extends Status {
 		
 		return new CapabilityStatus(exception);
 	}
+	
+	/**
+	 * Returns the result of a finished capability job as a capability status: cancellations and
+	 * missing results are reported as cancelled, and other non-capability statuses as errors.
+	 * @param result the job's result
+	 * @return the result of the job as a capability status
+	 */
+	public static CapabilityStatus fromJobResult(final IStatus result) {
+		if (result instanceof CapabilityStatus) {
+			return (CapabilityStatus) result;
+		} else if (result == null || result.getSeverity() == IStatus.CANCEL) {
+			return makeCancelled();
+		} else {
+			return makeError(new RuntimeException(result.getMessage(), result.getException()));
+		}
+	}
 }
@@ -48,6 +48,21 @@ public class CapabilityUtil {
 		}		
 	}
 	
+	/**
+	 * Returns the exception explaining why <code>capability</code> did not produce a result, e.g., for 
+	 * reporting the failure of a pipeline stage.
+	 * @param capability the capability
+	 * @param status the capability's result, which does not have a value
+	 * @return the status' exception, or an exception stating that the capability did not produce a result
+	 */
+	public static Throwable failure(final ICapability capability, final CapabilityStatus status){
+		if (status.getException() != null) {
+			return status.getException();
+		} else {
+			return new IllegalStateException("Capability " + capability.getName() + " did not produce a result");
+		}
+	}
+	
 	/**
 	 * Returns the output reference for the given single-output capability.
 	 * @param capability the capability
@@ -0,0 +1,37 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Todd Schiller.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Todd Schiller - initial API, implementation, and documentation
+ ******************************************************************************/
+package edu.washington.cs.cupid.capability;
+
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+import edu.washington.cs.cupid.CapabilityExecutor;
+
+/**
+ * A capability that can compute its outputs for many inputs at once, e.g., to evaluate a predicate
+ * for every item in a view with a single job instead of a job per item.
+ * @author Todd Schiller (tws@cs.washington.edu)
+ * @see {@link CapabilityExecutor#asyncExecAll(ICapability, List, Object, org.eclipse.core.runtime.jobs.IJobChangeListener)}
+ */
+public interface IBatchCapability extends ICapability {
+
+	/**
+	 * Computes the outputs of the capability for each of <code>inputs</code> in the calling thread.
+	 * The results are not cached; use {@link CapabilityExecutor#syncExecAll(ICapability, List, IProgressMonitor)}
+	 * to reuse and cache results.
+	 * @param inputs the inputs
+	 * @param monitor the progress monitor
+	 * @return the result for each input, in the same order as <code>inputs</code>
+	 * @throws InterruptedException if the calling thread is interrupted while waiting for a result
+	 */
+	List<CapabilityStatus> executeAll(List<? extends ICapabilityArguments> inputs, IProgressMonitor monitor) throws InterruptedException;
+}
@@ -2,20 +2,24 @@ package edu.washington.cs.cupid.capability;
 
 import java.io.Serializable;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Set;
 
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubProgressMonitor;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
+import edu.washington.cs.cupid.CapabilityExecutor;
 import edu.washington.cs.cupid.CupidPlatform;
 import edu.washington.cs.cupid.capability.dynamic.DynamicBindingException;
 import edu.washington.cs.cupid.capability.exception.MalformedCapabilityException;
 import edu.washington.cs.cupid.capability.exception.NoSuchCapabilityException;
 
-public class OutputSelector extends AbstractSerializableCapability{
+public class OutputSelector extends AbstractSerializableCapability implements IBatchCapability {
 
 	private static final long serialVersionUID = 1L;
 
@@ -103,17 +107,15 @@ public class OutputSelector extends AbstractSerializableCapability{
 						throw new RuntimeException("Capability " + capability.getName() + " produced null job");
 					}
 
-					subtask.setProgressGroup(new SubProgressMonitor(monitor, 1), 1);
-					subtask.schedule();
-					subtask.join();
+					CapabilityStatus status = subtask.execute(new SubProgressMonitor(monitor, 1));
 
-					CapabilityStatus status = (CapabilityStatus) subtask.getResult();
-
-					if (status.getCode() == Status.OK) {
+					if (status.getSeverity() == IStatus.CANCEL) {
+						return CapabilityStatus.makeCancelled();
+					} else if (status.getCode() == Status.OK && status.value() != null) {
 						Object result = status.value().getOutput(outputName);
 						return CapabilityStatus.makeOk(CapabilityUtil.packSingleOutputValue(OutputSelector.this, result));
 					} else {
-						throw status.getException();
+						throw CapabilityUtil.failure(capability, status);
 					}
 					
 				} catch (Throwable e) {
@@ -125,6 +127,31 @@ public class OutputSelector extends AbstractSerializableCapability{
 		};
 	}
 
+	@Override
+	public List<CapabilityStatus> executeAll(final List<? extends ICapabilityArguments> inputs, final IProgressMonitor monitor) throws InterruptedException {
+		ICapability capability = null;
+		try {
+			capability = getCapability();
+		} catch (NoSuchCapabilityException e) {
+			throw new DynamicBindingException(e);
+		}
+		
+		List<CapabilityStatus> result = Lists.newArrayList();
+		
+		for (CapabilityStatus status : CapabilityExecutor.syncExecAll(capability, inputs, monitor)) {
+			if (status.getSeverity() == IStatus.CANCEL) {
+				result.add(CapabilityStatus.makeCancelled());
+			} else if (status.getCode() == Status.OK && status.value() != null) {
+				Object value = status.value().getOutput(outputName);
+				result.add(CapabilityStatus.makeOk(CapabilityUtil.packSingleOutputValue(this, value)));
+			} else {
+				result.add(CapabilityStatus.makeError(CapabilityUtil.failure(capability, status)));
+			}
+		}
+		
+		return result;
+	}
+
 	@Override
 	public EnumSet<Flag> getFlags() {
 		try {
@@ -17,11 +17,14 @@ import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubProgressMonitor;
 
 import com.google.common.collect.Lists;
 
+import edu.washington.cs.cupid.CapabilityExecutor;
+import edu.washington.cs.cupid.capability.CapabilityStatus;
 import edu.washington.cs.cupid.capability.CapabilityUtil;
 import edu.washington.cs.cupid.capability.ICapability;
 import edu.washington.cs.cupid.capability.ICapabilityArguments;
@@ -31,7 +34,8 @@ import edu.washington.cs.cupid.capability.linear.LinearJob;
 import edu.washington.cs.cupid.capability.linear.LinearStatus;
 
 /**
- * A linear pipeline with dynamic binding.
+ * A linear pipeline with dynamic binding. Each stage is executed through the {@link CapabilityExecutor},
+ * so intermediate results are cached and shared between pipelines with a common prefix.
  * @param <I> input type
  * @param <V> output type
  * @author Todd Schiller
@@ -91,31 +95,19 @@ public class DynamicPipeline<I, V> extends AbstractDynamicCapability implements
 
 					List<ILinearCapability<?, ?>> resolved = inorder();
 
-					List<Object> intermediateResults = Lists.newArrayList();
-					intermediateResults.add(result);
-
 					for (ILinearCapability capability : resolved) {
 						if (monitor.isCanceled()) {
 							return LinearStatus.<V>makeCancelled();
 						}
 
-						LinearJob<?, ?> subtask = (LinearJob<?, ?>) capability.getJob(result);
-
-						if (subtask == null) {
-							throw new RuntimeException("Capability " + capability.getName() + " produced null job");
-						}
-
-						subtask.setProgressGroup(new SubProgressMonitor(monitor, 1), 1);
-						subtask.schedule();
-						subtask.join();
-
-						LinearStatus<?> status = (LinearStatus<?>) subtask.getResult();
+						CapabilityStatus status = CapabilityExecutor.syncExec(capability, CapabilityUtil.packUnaryInput(capability, result), new SubProgressMonitor(monitor, 1));
 
-						if (status.getCode() == Status.OK) {
-							result = status.getOutputValue();
-							intermediateResults.add(result);
+						if (status.getSeverity() == IStatus.CANCEL) {
+							return LinearStatus.<V>makeCancelled();
+						} else if (status.getCode() == Status.OK && status.value() != null) {
+							result = CapabilityUtil.singleOutputValue(capability, status);
 						} else {
-							throw status.getException();
+							throw CapabilityUtil.failure(capability, status);
 						}
 					}
 					return LinearStatus.<V>makeOk(getCapability(), (V) result);
@@ -16,6 +16,9 @@ import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubProgressMonitor;
 
@@ -23,10 +26,12 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
+import edu.washington.cs.cupid.CapabilityExecutor;
 import edu.washington.cs.cupid.capability.CapabilityArguments;
 import edu.washington.cs.cupid.capability.CapabilityJob;
 import edu.washington.cs.cupid.capability.CapabilityStatus;
 import edu.washington.cs.cupid.capability.CapabilityUtil;
+import edu.washington.cs.cupid.capability.IBatchCapability;
 import edu.washington.cs.cupid.capability.ICapability;
 import edu.washington.cs.cupid.capability.ICapabilityArguments;
 import edu.washington.cs.cupid.capability.OptionalParameter;
@@ -40,7 +45,7 @@ import edu.washington.cs.cupid.capability.exception.NoSuchCapabilityException;
  * @param <V> output type
  * @author Todd Schiller
  */
-public class DynamicSerializablePipeline extends AbstractDynamicSerializableCapability {
+public class DynamicSerializablePipeline extends AbstractDynamicSerializableCapability implements IBatchCapability {
 	// TODO handle concurrent modifications to capability bindings
 	
 	private static final long serialVersionUID = 20130729L;
@@ -161,21 +166,19 @@ public class DynamicSerializablePipeline extends AbstractDynamicSerializableCapa
 			
 			if (source instanceof ICapability){
 				ICapability optionCapability = (ICapability) source;
-				CapabilityJob<?> job = optionCapability.getJob(CapabilityUtil.packUnaryInput(optionCapability, mainInput));
-				
-				job.schedule();
+				CapabilityStatus status;
 				try {
-					job.join();
+					status = CapabilityExecutor.syncExec(optionCapability, CapabilityUtil.packUnaryInput(optionCapability, mainInput), new NullProgressMonitor());
 				} catch (InterruptedException e) {
 					throw new RuntimeException("Error running option capability " + optionCapability.getName(), e);
 				}
-				
-				CapabilityStatus status = (CapabilityStatus) job.getResult();
 
-				if (status.getCode() == Status.OK) {
+				if (status.getSeverity() == IStatus.CANCEL) {
+					throw new OperationCanceledException();
+				} else if (status.getCode() == Status.OK && status.value() != null) {
 					args.add(option, CapabilityUtil.singleOutputValue(optionCapability, status));
 				} else {
-					throw new RuntimeException("Error running option capability " + optionCapability.getName(), status.getException());
+					throw new RuntimeException("Error running option capability " + optionCapability.getName(), CapabilityUtil.failure(optionCapability, status));
 				}
 				
 			}else if (source instanceof IParameter){
@@ -203,8 +206,6 @@ public class DynamicSerializablePipeline extends AbstractDynamicSerializableCapa
 							getInputs().getValueArgument(CapabilityUtil.unaryParameter(getCapability()));
 					
 					Object result = mainInput;
-					List<Object> intermediateResults = Lists.newArrayList();
-					intermediateResults.add(result);
 
 					for (int i = 0; i < resolved.size(); i++){
 						ICapability capability = resolved.get(i);
@@ -214,28 +215,21 @@ public class DynamicSerializablePipeline extends AbstractDynamicSerializableCapa
 							return CapabilityStatus.makeCancelled();
 						}
 
-						CapabilityJob<?> subtask = capability.getJob(formArguments(mainInput, capability, capabilitySources, getInputs(), result));
-
-						if (subtask == null) {
-							throw new RuntimeException("Capability " + capability.getName() + " produced null job");
-						}
-
-						subtask.setProgressGroup(new SubProgressMonitor(monitor, 1), 1);
-						subtask.schedule();
-						subtask.join();
+						CapabilityStatus status = CapabilityExecutor.syncExec(capability, formArguments(mainInput, capability, capabilitySources, getInputs(), result), new SubProgressMonitor(monitor, 1));
 
-						CapabilityStatus status = (CapabilityStatus) subtask.getResult();
-
-						if (status.getCode() == Status.OK) {
+						if (status.getSeverity() == IStatus.CANCEL) {
+							return CapabilityStatus.makeCancelled();
+						} else if (status.getCode() == Status.OK && status.value() != null) {
 							result = CapabilityUtil.singleOutputValue(capability, status);
-							intermediateResults.add(result);
 						} else {
-							throw status.getException();
+							throw CapabilityUtil.failure(capability, status);
 						}
 					}
 					return CapabilityStatus.makeOk(
 							CapabilityUtil.packSingleOutputValue(DynamicSerializablePipeline.this, 
 							result));
+				} catch (OperationCanceledException ex) {
+					return CapabilityStatus.makeCancelled();
 				} catch (Throwable ex) {
 					return CapabilityStatus.makeError(ex);
 				} finally {
@@ -245,6 +239,87 @@ public class DynamicSerializablePipeline extends AbstractDynamicSerializableCapa
 		};
 	}
 
+	/**
+	 * Runs the pipeline for each of <code>inputs</code>, stage by stage: each stage is executed for every input
+	 * that has not yet failed using {@link CapabilityExecutor#syncExecAll(ICapability, List, IProgressMonitor)}.
+	 */
+	@Override
+	public List<CapabilityStatus> executeAll(final List<? extends ICapabilityArguments> inputs, final IProgressMonitor monitor) throws InterruptedException {
+		CapabilityStatus[] statuses = new CapabilityStatus[inputs.size()];
+		
+		try {
+			monitor.beginTask(getName(), capabilities.size());
+			
+			List<ICapability> resolved;
+			try {
+				resolved = inorder();
+			} catch (NoSuchCapabilityException e) {
+				throw new DynamicBindingException(e);
+			}
+			
+			boolean generator = CapabilityUtil.isGenerator(this);
+			
+			Object[] mainInputs = new Object[inputs.size()];
+			Object[] results = new Object[inputs.size()];
+			for (int k = 0; k < inputs.size(); k++) {
+				mainInputs[k] = generator ? null : inputs.get(k).getValueArgument(CapabilityUtil.unaryParameter(this));
+				results[k] = mainInputs[k];
+			}
+			
+			for (int i = 0; i < resolved.size(); i++) {
+				ICapability capability = resolved.get(i);
+				Map<IParameter<?>, Serializable> capabilitySources = sources.get(i);
+				
+				// the inputs that have not failed, and their arguments for the stage
+				List<Integer> active = Lists.newArrayList();
+				List<ICapabilityArguments> args = Lists.newArrayList();
+				
+				for (int k = 0; k < inputs.size(); k++) {
+					if (statuses[k] != null) {
+						continue;
+					} else if (monitor.isCanceled()) {
+						statuses[k] = CapabilityStatus.makeCancelled();
+						continue;
+					}
+					
+					try {
+						args.add(formArguments(mainInputs[k], capability, capabilitySources, inputs.get(k), results[k]));
+						active.add(k);
+					} catch (OperationCanceledException ex) {
+						statuses[k] = CapabilityStatus.makeCancelled();
+					} catch (RuntimeException ex) {
+						statuses[k] = CapabilityStatus.makeError(ex);
+					}
+				}
+				
+				List<CapabilityStatus> stage = CapabilityExecutor.syncExecAll(capability, args, new SubProgressMonitor(monitor, 1));
+				
+				for (int j = 0; j < active.size(); j++) {
+					int k = active.get(j);
+					CapabilityStatus status = stage.get(j);
+					
+					if (status.getSeverity() == IStatus.CANCEL) {
+						statuses[k] = CapabilityStatus.makeCancelled();
+					} else if (status.getCode() == Status.OK && status.value() != null) {
+						results[k] = CapabilityUtil.singleOutputValue(capability, status);
+					} else {
+						statuses[k] = CapabilityStatus.makeError(CapabilityUtil.failure(capability, status));
+					}
+				}
+			}
+			
+			for (int k = 0; k < inputs.size(); k++) {
+				if (statuses[k] == null) {
+					statuses[k] = CapabilityStatus.makeOk(CapabilityUtil.packSingleOutputValue(this, results[k]));
+				}
+			}
+			
+			return Lists.newArrayList(statuses);
+		} finally {
+			monitor.done();
+		}
+	}
+
 	@Override
 	public Set<IParameter<?>> getParameters() {
 		return parameters;
@@ -16,25 +16,28 @@ import java.util.List;
 import java.util.Set;
 
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubProgressMonitor;
 
 import com.google.common.collect.Lists;
 
+import edu.washington.cs.cupid.CapabilityExecutor;
+import edu.washington.cs.cupid.capability.CapabilityStatus;
 import edu.washington.cs.cupid.capability.CapabilityUtil;
 import edu.washington.cs.cupid.capability.ICapabilityArguments;
 import edu.washington.cs.cupid.capability.IDynamicCapability;
 
 /**
- * Executes a series of static capabilities sequentially.
+ * Executes a series of static capabilities sequentially. Each stage is executed through the 
+ * {@link CapabilityExecutor}, so intermediate results are cached and shared between pipelines
+ * with a common prefix.
  * @author Todd Schiller (tws@cs.washington.edu)
  * @param <I> input type
  * @param <T> output type
  */
 public final class LinearPipeline<I, V> implements ILinearCapability<I, V> {
 
-	// TODO support caching for intermediary values
-	
 	private final String name;
 	private final String description;
 	private final List<ILinearCapability<?, ?>> capabilities;
@@ -84,19 +87,15 @@ public final class LinearPipeline<I, V> implements ILinearCapability<I, V> {
 							return LinearStatus.<V>makeCancelled();
 						}
 						
-						LinearJob<?,?> subtask = capability.getJob(result);
-						
-						subtask.setProgressGroup(new SubProgressMonitor(monitor, 1), 1);
-						subtask.schedule();
-						subtask.join();
-						
-						LinearStatus<?> status = (LinearStatus<?>) subtask.getResult();
+						CapabilityStatus status = CapabilityExecutor.syncExec(capability, CapabilityUtil.packUnaryInput(capability, result), new SubProgressMonitor(monitor, 1));
 						
-						if (status.getCode() == Status.OK) {
-							result = status.getOutputValue();
+						if (status.getSeverity() == IStatus.CANCEL) {
+							return LinearStatus.<V>makeCancelled();
+						} else if (status.getCode() == Status.OK && status.value() != null) {
+							result = CapabilityUtil.singleOutputValue(capability, status);
 						} else {
-							throw status.getException();
-						}		
+							throw CapabilityUtil.failure(capability, status);
+						}
 					}
 					return LinearStatus.makeOk(getCapability(), (V) result);
 				} catch (Throwable ex) {
@@ -2,6 +2,7 @@ package edu.washington.cs.cupid.capability.snippet;
 
 import java.io.IOException;
 import java.security.SecureClassLoader;
+import java.util.Map;
 
 import javax.tools.FileObject;
 import javax.tools.ForwardingJavaFileManager;
@@ -9,15 +10,17 @@ import javax.tools.JavaFileObject;
 import javax.tools.JavaFileObject.Kind;
 import javax.tools.StandardJavaFileManager;
 
+import com.google.common.collect.Maps;
+
 /**
  * http://www.javablogging.com/dynamic-in-memory-compilation/
  */
 public class ClassFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
 	/**
-	 * Instance of JavaClassObject that will store the
-	 * compiled bytecode of our class
+	 * Instances of JavaClassObject that will store the
+	 * compiled bytecode of our class and its inner classes
 	 */
-	private JavaClassObject jclassObject;
+	private final Map<String, JavaClassObject> jclassObjects = Maps.newLinkedHashMap();
 
 	private final ClassLoader parent;
 	
@@ -41,13 +44,41 @@ public class ClassFileManager extends ForwardingJavaFileManager<StandardJavaFile
 	 */
 	@Override
 	public ClassLoader getClassLoader(Location location) {
-		return new SecureClassLoader(parent) {
-			@Override
-			protected Class<?> findClass(String name) throws ClassNotFoundException {
-				byte[] b = jclassObject.getBytes();
-				return super.defineClass(name, jclassObject.getBytes(), 0, b.length);
+		return new BytesClassLoader(parent, getClassBytes());
+	}
+	
+	/**
+	 * Returns the byte code of the compiled classes
+	 * @return Class Name -> Byte Code
+	 */
+	public Map<String, byte[]> getClassBytes() {
+		Map<String, byte[]> result = Maps.newLinkedHashMap();
+		for (Map.Entry<String, JavaClassObject> entry : jclassObjects.entrySet()) {
+			result.put(entry.getKey(), entry.getValue().getBytes());
+		}
+		return result;
+	}
+	
+	/**
+	 * A class loader that defines classes from byte code, delegating to 
+	 * its parent for all other classes
+	 */
+	public static class BytesClassLoader extends SecureClassLoader {
+		private final Map<String, byte[]> classes;
+		
+		public BytesClassLoader(ClassLoader parent, Map<String, byte[]> classes) {
+			super(parent);
+			this.classes = classes;
+		}
+		
+		@Override
+		protected Class<?> findClass(String name) throws ClassNotFoundException {
+			byte[] b = classes.get(name);
+			if (b == null) {
+				throw new ClassNotFoundException(name);
 			}
-		};
+			return super.defineClass(name, b, 0, b.length);
+		}
 	}
 
 	/**
@@ -58,7 +89,8 @@ public class ClassFileManager extends ForwardingJavaFileManager<StandardJavaFile
 	public JavaFileObject getJavaFileForOutput(Location location, String className, Kind kind, FileObject sibling)
 					throws IOException {
 		
-		jclassObject = new JavaClassObject(className, kind);
+		JavaClassObject jclassObject = new JavaClassObject(className, kind);
+		jclassObjects.put(className, jclassObject);
 		return jclassObject;
 	}
 }
@@ -0,0 +1,16 @@
+package edu.washington.cs.cupid.capability.snippet;
+
+/**
+ * Implemented by compiled snippet classes, so that snippets can be run with a direct call instead 
+ * of through reflection.
+ * @author Todd Schiller
+ */
+public interface ISnippetFunction {
+
+	/**
+	 * Returns the result of the snippet for <code>val</code>; primitive results are boxed.
+	 * @param val the snippet input
+	 * @return the result of the snippet for <code>val</code>
+	 */
+	Object apply(Object val);
+}
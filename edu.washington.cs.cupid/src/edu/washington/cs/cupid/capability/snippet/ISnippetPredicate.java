@@ -0,0 +1,16 @@
+package edu.washington.cs.cupid.capability.snippet;
+
+/**
+ * Implemented by compiled snippet classes for snippets that return <code>boolean</code>, so that 
+ * predicates can be run without boxing the result.
+ * @author Todd Schiller
+ */
+public interface ISnippetPredicate extends ISnippetFunction {
+
+	/**
+	 * Returns the result of the snippet for <code>val</code>.
+	 * @param val the snippet input
+	 * @return the result of the snippet for <code>val</code>
+	 */
+	boolean test(Object val);
+}
@@ -1,17 +1,20 @@
 package edu.washington.cs.cupid.capability.snippet;
 
-import java.lang.reflect.InvocationTargetException;
+import java.util.List;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 
+import com.google.common.collect.Lists;
 import com.google.common.reflect.TypeToken;
 
 import edu.washington.cs.cupid.capability.CapabilityStatus;
+import edu.washington.cs.cupid.capability.IBatchCapability;
+import edu.washington.cs.cupid.capability.ICapabilityArguments;
 import edu.washington.cs.cupid.capability.linear.GenericLinearSerializableCapability;
 import edu.washington.cs.cupid.capability.linear.LinearJob;
 import edu.washington.cs.cupid.capability.linear.LinearStatus;
 
-public class SnippetCapability<I,V> extends GenericLinearSerializableCapability<I,V> {
+public class SnippetCapability<I,V> extends GenericLinearSerializableCapability<I,V> implements IBatchCapability {
 
 	private static final long serialVersionUID = 2L;
 	private TypeToken<I> inputType;
@@ -35,18 +38,50 @@ public class SnippetCapability<I,V> extends GenericLinearSerializableCapability<
 			protected CapabilityStatus run(IProgressMonitor monitor) {
 				try{
 					monitor.beginTask("Execute Snippet", 1);
-					V val = SnippetEvalManager.getInstance().run(SnippetCapability.this, input);
-					return LinearStatus.makeOk(getCapability(), val);	
-				}catch (InvocationTargetException ex){
-					return LinearStatus.<V>makeError(ex.getTargetException());
-				}catch(Exception ex){
-					return LinearStatus.<V>makeError(ex);
+					return apply(input);
 				}finally{
 					monitor.done();
 				}
 			}
 		};
 	}
+	
+	private LinearStatus<V> apply(final I input){
+		try{
+			SnippetEvalManager manager = SnippetEvalManager.getInstance();
+			
+			@SuppressWarnings("unchecked") // the output type is boolean
+			V val = SnippetEvalManager.isBoolean(outputType) 
+					? (V) Boolean.valueOf(manager.test(this, input))
+					: manager.run(this, input);
+			
+			return LinearStatus.makeOk(this, val);	
+		}catch(Exception ex){
+			return LinearStatus.<V>makeError(ex);
+		}
+	}
+	
+	@Override
+	public List<CapabilityStatus> executeAll(final List<? extends ICapabilityArguments> inputs, final IProgressMonitor monitor) {
+		List<CapabilityStatus> result = Lists.newArrayList();
+		
+		try{
+			monitor.beginTask("Execute Snippet", inputs.size());
+			
+			for (ICapabilityArguments input : inputs){
+				if (monitor.isCanceled()){
+					result.add(CapabilityStatus.makeCancelled());
+				}else{
+					result.add(apply(input.getValueArgument(getParameter())));
+				}
+				monitor.worked(1);
+			}
+			
+			return result;
+		}finally{
+			monitor.done();
+		}
+	}
 
 	public String getSnippet(){
 		return snippet;
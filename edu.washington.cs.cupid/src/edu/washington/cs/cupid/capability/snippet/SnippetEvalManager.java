@@ -1,42 +1,132 @@
 package edu.washington.cs.cupid.capability.snippet;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.lang.reflect.Method;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.net.URL;
+import java.nio.charset.Charset;
 import java.security.CodeSource;
 import java.security.ProtectionDomain;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 
 import javax.tools.Diagnostic;
 import javax.tools.DiagnosticCollector;
+import javax.tools.DiagnosticListener;
 import javax.tools.JavaCompiler;
 import javax.tools.JavaFileManager;
 import javax.tools.JavaFileObject;
 import javax.tools.ToolProvider;
 
 import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.PlatformObject;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 
 import com.google.common.base.Joiner;
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.Longs;
 import com.google.common.reflect.TypeToken;
 
 import edu.washington.cs.cupid.capability.exception.InvalidSnippetException;
+import edu.washington.cs.cupid.internal.CupidActivator;
 
+/**
+ * Compiles and runs code snippets. Compiled snippets are shared by all snippet capabilities with the 
+ * same input type, output type, and snippet text, and are also stored in the plug-in's state location 
+ * so that they are not recompiled when Eclipse restarts.
+ */
 public class SnippetEvalManager {
 
-	private int counter = 0;
 	public static final String METHOD_NAME = "run";
 	public static final String VALUE_NAME = "val";
 	
+	private static final int MAXIMUM_COMPILED_SNIPPETS = 256;
+	
+	/**
+	 * The maximum number of compiled snippets stored in the state location; the least recently used 
+	 * snippets are deleted first.
+	 */
+	private static final int MAXIMUM_STORED_SNIPPETS = 1024;
+	
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+	
+	private static final String SUFFIX = ".snippet";
+	
+	/**
+	 * The version of the generated snippet class source; change when the source changes so that
+	 * classes stored in the state location are not reused.
+	 */
+	private static final int SOURCE_VERSION = 2;
+	
 	private static SnippetEvalManager instance = new SnippetEvalManager();
 		
-	private HashMap<SnippetCapability<?,?>, Method> snippets = Maps.newHashMap();
+	/**
+	 * Snippet -> Compiled Snippet.
+	 */
+	private final Cache<SnippetKey, ISnippetFunction> snippets = CacheBuilder.newBuilder()
+			.maximumSize(MAXIMUM_COMPILED_SNIPPETS)
+			.build();
+	
+	/**
+	 * Input Type -> Classpath Jars.
+	 */
+	private final ConcurrentMap<Class<?>, Set<String>> jars = new MapMaker().weakKeys().makeMap();
+	
+	/**
+	 * A snippet, identified by its input type, output type, and normalized text.
+	 */
+	private static final class SnippetKey {
+		private final TypeToken<?> inputType;
+		private final TypeToken<?> outputType;
+		private final String snippet;
+		
+		private SnippetKey(TypeToken<?> inputType, TypeToken<?> outputType, String snippet) {
+			this.inputType = inputType;
+			this.outputType = outputType;
+			this.snippet = normalize(snippet);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			} else if (!(obj instanceof SnippetKey)) {
+				return false;
+			}
+			SnippetKey other = (SnippetKey) obj;
+			return inputType.equals(other.inputType) && outputType.equals(other.outputType) && snippet.equals(other.snippet);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(inputType, outputType, snippet);
+		}
+	}
 	
 	private SnippetEvalManager(){
 		// NO OP
@@ -47,14 +137,54 @@ public class SnippetEvalManager {
 	}
 	
 	public <I,V> V run(SnippetCapability<I,V> capability, I input) throws Exception {
-		if (!snippets.containsKey(capability)){
-			snippets.put(capability, compile(capability));
-		}
+		return (V) getFunction(capability).apply(input);
+	}
+	
+	/**
+	 * Returns the result of the <code>boolean</code> snippet for <code>capability</code> on <code>input</code>, 
+	 * without boxing the result.
+	 * @param capability the snippet capability; the output type must be <code>boolean</code> or {@link Boolean}
+	 * @param input the snippet input
+	 * @return the result of the snippet
+	 * @throws Exception if the snippet cannot be compiled, or the snippet throws an exception
+	 */
+	public <I> boolean test(SnippetCapability<I,?> capability, I input) throws Exception {
+		ISnippetFunction function = getFunction(capability);
 		
-		Method m = snippets.get(capability);
-		return (V) m.invoke(null, input);
+		if (function instanceof ISnippetPredicate){
+			return ((ISnippetPredicate) function).test(input);
+		}else{
+			return (Boolean) function.apply(input);
+		}
+	}
+	
+	/**
+	 * Returns <code>true</code> iff <code>type</code> is <code>boolean</code> or {@link Boolean}.
+	 * @param type the type
+	 * @return <code>true</code> iff <code>type</code> is <code>boolean</code> or {@link Boolean}
+	 */
+	public static boolean isBoolean(TypeToken<?> type){
+		return type.getRawType() == boolean.class || type.getRawType() == Boolean.class;
 	}
 	
+	private ISnippetFunction getFunction(final SnippetCapability<?,?> capability) throws Exception {
+		final SnippetKey key = new SnippetKey(capability.getInputType(), capability.getOutputType(), capability.getSnippet());
+		
+		try {
+			return snippets.get(key, new Callable<ISnippetFunction>(){
+				@Override
+				public ISnippetFunction call() throws Exception {
+					return load(key);
+				}
+			});
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof Exception) {
+				throw (Exception) ex.getCause();
+			} else {
+				throw ex;
+			}
+		}
+	}
 
 	private class CompilationStatus{
 		public DiagnosticCollector<JavaFileObject> msgs;
@@ -68,6 +198,14 @@ public class SnippetEvalManager {
 		}
 	}
 	
+	/**
+	 * Returns the snippet with surrounding whitespace removed, and a trailing semicolon.
+	 */
+	private static String normalize(String snippet){
+		snippet = snippet.replace("\r\n", "\n").trim();
+		return snippet.endsWith(";") ? snippet : (snippet  + ";");
+	}
+	
 	private String findJar(Class<?> clazz){
 		ProtectionDomain d = clazz.getProtectionDomain();
 		CodeSource s = d.getCodeSource();
@@ -96,22 +234,92 @@ public class SnippetEvalManager {
 		return result;
 	}
 	
+	/**
+	 * Returns the compilation classpath jars for snippets with input type <code>inputType</code>.
+	 */
+	private Set<String> jars(TypeToken<?> inputType){
+		Class<?> clazz = inputType.getRawType();
+		Set<String> result = jars.get(clazz);
+		
+		if (result == null){
+			Set<String> computed = Sets.newTreeSet();
+			for (Class<?> c : getDependentClasses(clazz)){
+				String jar = findJar(c);
+				if (jar != null){
+					computed.add(jar);
+				}
+			}
+			computed.add(findJar(IResource.class));
+			computed.add(findJar(PlatformObject.class));
+			computed.add(findJar(ISnippetFunction.class));
+			computed.remove(null);
+			
+			result = Collections.unmodifiableSet(computed);
+			jars.put(clazz, result);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Returns the compilation classpath for snippets with input type <code>inputType</code>.
+	 */
+	private String classpath(TypeToken<?> inputType){
+        return Joiner.on(System.getProperty("path.separator")).join(jars(inputType));
+	}
+	
+	/**
+	 * Returns the name of the class for <code>snippet</code>. The name is derived from the snippet 
+	 * and its classpath, so that classes compiled against a different version of a plug-in are not reused.
+	 */
+	private String className(SnippetKey snippet, String cp){
+		String id = Joiner.on('\0').join(SOURCE_VERSION, cp, snippet.inputType, snippet.outputType, snippet.snippet);
+		return "SnippetClass" + Hashing.sha1().hashString(id, CHARSET).toString();
+	}
+	
 	private CompilationStatus compile(JavaCompiler compiler, JavaFileManager fileManager, TypeToken<?> inputType, TypeToken<?> outputType, String snippet){
-		int id = counter++;
+		String cp = classpath(inputType);
 		
-		String simpleName = "SnippetClass" + id;
+		String simpleName = className(new SnippetKey(inputType, outputType, snippet), cp);
         String fullName = simpleName;
 		
+        List<JavaFileObject> jfiles = Lists.newArrayList();
+        jfiles.add(new CharSequenceJavaFileObject(fullName, source(simpleName, inputType, outputType, snippet)));
+
+        List<String> optionList = Lists.newArrayList();
+        // set compiler's classpath to be same as the runtime's
+        optionList.addAll(Arrays.asList("-classpath", cp));
+        
+        DiagnosticCollector<JavaFileObject> msgs = new DiagnosticCollector<JavaFileObject>();
+        compiler.getTask(null, fileManager, msgs, optionList, null, jfiles).call();
+         
+        return new CompilationStatus(msgs, fullName);
+	}
+	
+	/**
+	 * Returns the source code of the class named <code>simpleName</code> for the snippet.
+	 */
+	private CharSequence source(String simpleName, TypeToken<?> inputType, TypeToken<?> outputType, String snippet){
         String outputClass = outputType.getRawType().getName();
         String inputClass = inputType.getRawType().getName();
         
-        snippet = snippet.trim();
-        snippet = snippet.endsWith(";") ? snippet : (snippet  + ";");
+        snippet = normalize(snippet);
         
         // Here we specify the source code of the class to be compiled
         StringBuilder src = new StringBuilder();
+        boolean predicate = isBoolean(outputType);
+        String functionInterface = (predicate ? ISnippetPredicate.class : ISnippetFunction.class).getName();
+        
         src.append("import " + inputType.getRawType().getName() + ";\n");
-        src.append("public class " + simpleName + " {\n");
+        src.append("public class " + simpleName + " implements " + functionInterface + " {\n");
+        src.append("    public Object apply(Object " + VALUE_NAME + ") {\n");
+        src.append("        return " + METHOD_NAME + "((" + inputClass + ") " + VALUE_NAME + ");\n");
+        src.append("    }\n");
+        if (predicate){
+        	src.append("    public boolean test(Object " + VALUE_NAME + ") {\n");
+        	src.append("        return " + METHOD_NAME + "((" + inputClass + ") " + VALUE_NAME + ");\n");
+        	src.append("    }\n");
+        }
         src.append("    public static " + outputClass + " " + METHOD_NAME + "(" + inputClass + " " + VALUE_NAME + ") {\n");
         src.append("       try{\n");
         src.append("        " + snippet + "\n");
@@ -120,27 +328,161 @@ public class SnippetEvalManager {
         src.append("       }\n");
         src.append("    }\n");
         src.append("}\n");
-        
-        List<JavaFileObject> jfiles = Lists.newArrayList();
-        jfiles.add(new CharSequenceJavaFileObject(fullName, src));
-
-        Set<String> jars = Sets.newHashSet();
-        for (Class<?> c : getDependentClasses(inputType.getRawType())){
-        	jars.add(findJar(c));
-        }
-        jars.add(findJar(IResource.class));
-        jars.add(findJar(PlatformObject.class));
-        
-        String cp = Joiner.on(System.getProperty("path.separator")).skipNulls().join(jars);
-        
-        List<String> optionList = Lists.newArrayList();
-        // set compiler's classpath to be same as the runtime's
-        optionList.addAll(Arrays.asList("-classpath", cp));
-        
-        DiagnosticCollector<JavaFileObject> msgs = new DiagnosticCollector<JavaFileObject>();
-        compiler.getTask(null, fileManager, msgs, optionList, null, jfiles).call();
-         
-        return new CompilationStatus(msgs, fullName);
+        return src;
+	}
+	
+	/**
+	 * Compiles the snippets for <code>capabilities</code> that have not already been compiled or stored in 
+	 * the state location using a single compiler invocation, and caches the results.
+	 * @param capabilities the snippet capabilities
+	 * @return the compiler diagnostics for each snippet that was compiled
+	 */
+	public Map<SnippetCapability<?,?>, DiagnosticCollector<JavaFileObject>> compileAll(Collection<? extends SnippetCapability<?,?>> capabilities){
+		Map<SnippetCapability<?,?>, DiagnosticCollector<JavaFileObject>> result = Maps.newLinkedHashMap();
+		
+		// Class Name -> Snippet, for the snippets that must be compiled
+		Map<String, SnippetKey> pending = Maps.newLinkedHashMap();
+		Map<String, SnippetCapability<?,?>> owners = Maps.newHashMap();
+		
+		for (SnippetCapability<?,?> capability : capabilities){
+			SnippetKey key = new SnippetKey(capability.getInputType(), capability.getOutputType(), capability.getSnippet());
+			if (snippets.getIfPresent(key) != null){
+				continue;
+			}
+			
+			String fullName = className(key, classpath(key.inputType));
+			File file = stateFile(fullName);
+			Map<String, byte[]> classes = file == null ? null : read(file);
+			
+			if (classes != null){
+				define(key, fullName, classes);
+			}else if (!pending.containsKey(fullName)){
+				pending.put(fullName, key);
+				owners.put(fullName, capability);
+			}
+		}
+		
+		while (!pending.isEmpty()){
+			Map<String, DiagnosticCollector<JavaFileObject>> msgs = Maps.newHashMap();
+			Map<String, byte[]> classes = compileAll(pending, msgs);
+			
+			Set<String> failed = Sets.newHashSet();
+			for (String fullName : pending.keySet()){
+				result.put(owners.get(fullName), msgs.get(fullName));
+				
+				for (Diagnostic<?> d : msgs.get(fullName).getDiagnostics()){
+					if (d.getKind() == Diagnostic.Kind.ERROR){
+						failed.add(fullName);
+						break;
+					}
+				}
+			}
+			
+			if (failed.isEmpty()){
+				for (Map.Entry<String, SnippetKey> entry : pending.entrySet()){
+					Map<String, byte[]> snippetClasses = Maps.newHashMap();
+					for (Map.Entry<String, byte[]> clazz : classes.entrySet()){
+						if (clazz.getKey().equals(entry.getKey()) || clazz.getKey().startsWith(entry.getKey() + "$")){
+							snippetClasses.put(clazz.getKey(), clazz.getValue());
+						}
+					}
+					
+					File file = stateFile(entry.getKey());
+					if (file != null){
+						write(file, snippetClasses);
+					}
+					define(entry.getValue(), entry.getKey(), snippetClasses);
+				}
+				pending.clear();
+			}else{
+				// the compiler does not generate classes if any snippet has an error, so compile the others again
+				pending.keySet().removeAll(failed);
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Compiles <code>pending</code> in a single compiler invocation, reporting the diagnostics for each snippet 
+	 * to <code>msgs</code>.
+	 * @return Class Name -> Byte Code for the snippet classes and their inner classes
+	 */
+	private Map<String, byte[]> compileAll(Map<String, SnippetKey> pending, Map<String, DiagnosticCollector<JavaFileObject>> msgs){
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		ClassFileManager fileManager = new ClassFileManager(
+				SnippetEvalManager.class.getClassLoader(), 
+				compiler.getStandardFileManager(null, null, null));
+		
+		final Map<JavaFileObject, DiagnosticCollector<JavaFileObject>> sources = Maps.newIdentityHashMap();
+		List<JavaFileObject> jfiles = Lists.newArrayList();
+		Set<String> jars = Sets.newTreeSet();
+		
+		for (Map.Entry<String, SnippetKey> entry : pending.entrySet()){
+			SnippetKey key = entry.getValue();
+			JavaFileObject jfile = new CharSequenceJavaFileObject(entry.getKey(), source(entry.getKey(), key.inputType, key.outputType, key.snippet));
+			
+			DiagnosticCollector<JavaFileObject> collector = new DiagnosticCollector<JavaFileObject>();
+			msgs.put(entry.getKey(), collector);
+			sources.put(jfile, collector);
+			jfiles.add(jfile);
+			jars.addAll(jars(key.inputType));
+		}
+		
+		List<String> optionList = Arrays.asList("-classpath", Joiner.on(System.getProperty("path.separator")).join(jars));
+		
+		DiagnosticListener<JavaFileObject> listener = new DiagnosticListener<JavaFileObject>(){
+			@Override
+			public void report(Diagnostic<? extends JavaFileObject> diagnostic) {
+				DiagnosticCollector<JavaFileObject> collector = sources.get(diagnostic.getSource());
+				if (collector != null){
+					collector.report(diagnostic);
+				}else{
+					// not specific to a snippet (e.g., a classpath warning)
+					for (DiagnosticCollector<JavaFileObject> all : sources.values()){
+						all.report(diagnostic);
+					}
+				}
+			}
+		};
+		
+		compiler.getTask(null, fileManager, listener, optionList, null, jfiles).call();
+		
+		return fileManager.getClassBytes();
+	}
+	
+	/**
+	 * Returns a background job that compiles <code>capabilities</code> using {@link #compileAll(Collection)}. Snippets
+	 * with compilation errors are logged.
+	 * @param capabilities the snippet capabilities
+	 * @return a job that compiles <code>capabilities</code>
+	 */
+	public Job compileAllJob(final Collection<? extends SnippetCapability<?,?>> capabilities){
+		Job job = new Job("Compile Snippets"){
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				try{
+					monitor.beginTask("Compile Snippets", 1);
+					
+					for (Map.Entry<SnippetCapability<?,?>, DiagnosticCollector<JavaFileObject>> entry : compileAll(capabilities).entrySet()){
+						for (Diagnostic<?> d : entry.getValue().getDiagnostics()){
+							if (d.getKind() == Diagnostic.Kind.ERROR){
+								SnippetCapability<?,?> capability = entry.getKey();
+								CupidActivator.getDefault().logError("Error compiling snippet for " + capability.getName(), 
+										new InvalidSnippetException(capability.getInputType(), capability.getOutputType(), capability.getSnippet(), entry.getValue()));
+								break;
+							}
+						}
+					}
+					
+					return Status.OK_STATUS;
+				}finally{
+					monitor.done();
+				}
+			}
+		};
+		job.setPriority(Job.DECORATE);
+		return job;
 	}
 	
 	public DiagnosticCollector<JavaFileObject> tryCompile(TypeToken<?> inputType, TypeToken<?> outputType, String snippet){
@@ -151,15 +493,53 @@ public class SnippetEvalManager {
 		return compile(compiler, fileManager, inputType, outputType, snippet).msgs;
 	}
 	
+	/**
+	 * Returns the compiled snippet for <code>snippet</code>, loading the compiled classes from the state location 
+	 * if they are available, and compiling the snippet otherwise.
+	 */
+	private ISnippetFunction load(SnippetKey snippet) throws Exception {
+		String fullName = className(snippet, classpath(snippet.inputType));
+		File file = stateFile(fullName);
+		
+		Map<String, byte[]> classes = file == null ? null : read(file);
+		
+		if (classes == null){
+			classes = compile(snippet);
+			if (file != null){
+				write(file, classes);
+			}
+		}
+		
+		return function(fullName, classes);
+	}
+	
+	/**
+	 * Returns an instance of the snippet class <code>fullName</code> defined by <code>classes</code>.
+	 */
+	private ISnippetFunction function(String fullName, Map<String, byte[]> classes) throws ClassNotFoundException, InstantiationException, IllegalAccessException {
+		Class<?> clazz = new ClassFileManager.BytesClassLoader(SnippetEvalManager.class.getClassLoader(), classes).loadClass(fullName);
+        return (ISnippetFunction) clazz.newInstance();
+	}
+	
+	/**
+	 * Adds the compiled snippet for <code>snippet</code> defined by <code>classes</code> to the cache.
+	 */
+	private void define(SnippetKey snippet, String fullName, Map<String, byte[]> classes){
+		try {
+			snippets.put(snippet, function(fullName, classes));
+		} catch (Exception ex) {
+			// the snippet will be compiled again when it is run
+			CupidActivator.getDefault().logError("Error loading compiled snippet " + fullName, ex);
+		}
+	}
+	
 	/**
 	 * http://www.javablogging.com/dynamic-in-memory-compilation/
-	 * @param capability
-	 * @throws InstantiationException
-	 * @throws IllegalAccessException
-	 * @throws ClassNotFoundException
+	 * @param snippet the snippet
+	 * @return Class Name -> Byte Code for the snippet class and its inner classes
 	 * @throws InvalidSnippetException 
 	 */
-	private Method compile(SnippetCapability<?,?> capability) throws InstantiationException, IllegalAccessException, ClassNotFoundException, InvalidSnippetException{
+	private Map<String, byte[]> compile(SnippetKey snippet) throws InvalidSnippetException{
 		// We get an instance of JavaCompiler. Then
         // we create a file manager
         // (our custom implementation of it)
@@ -170,19 +550,103 @@ public class SnippetEvalManager {
 		            		SnippetEvalManager.class.getClassLoader(), 
 		            		compiler.getStandardFileManager(null, null, null));
         
-		CompilationStatus s = compile(compiler, fileManager, capability.getInputType(), capability.getOutputType(), capability.getSnippet());
+		CompilationStatus s = compile(compiler, fileManager, snippet.inputType, snippet.outputType, snippet.snippet);
 		
 		for (Diagnostic<?> d : s.msgs.getDiagnostics()){
 			if (d.getKind() == Diagnostic.Kind.ERROR){
-				throw new InvalidSnippetException(capability.getInputType(), capability.getOutputType(), capability.getSnippet(), s.msgs);
+				throw new InvalidSnippetException(snippet.inputType, snippet.outputType, snippet.snippet, s.msgs);
 			}
 		}
 		
-        // Creating an instance of our compiled class 
-        Class<?> clazz = fileManager.getClassLoader(null).loadClass(s.fullName);
-        
-        Method m = clazz.getMethods()[0];
-        
-        return m;
+        return fileManager.getClassBytes();
+	}
+	
+	/**
+	 * Returns the file in the state location holding the compiled classes for <code>className</code>, or 
+	 * <code>null</code> if the plug-in is not running.
+	 */
+	private File stateFile(String className){
+		CupidActivator plugin = CupidActivator.getDefault();
+		return plugin == null ? null : plugin.getStateLocation().append("snippets").append(className + SUFFIX).toFile();
+	}
+	
+	/**
+	 * Returns the compiled classes stored in <code>file</code>, or <code>null</code> if they cannot be read.
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<String, byte[]> read(File file){
+		if (!file.exists()){
+			return null;
+		}
+		
+		try {
+			ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+			try {
+				Map<String, byte[]> classes = (Map<String, byte[]>) in.readObject();
+				
+				// record the use, so that the snippet is not pruned before unused snippets
+				file.setLastModified(System.currentTimeMillis());
+				return classes;
+			} finally {
+				in.close();
+			}
+		} catch (Exception ex) {
+			file.delete();
+			return null;
+		}
+	}
+	
+	/**
+	 * Deletes the least recently used compiled snippets in <code>directory</code> until at most 
+	 * {@link #MAXIMUM_STORED_SNIPPETS} remain.
+	 */
+	private void prune(File directory){
+		File[] files = directory.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.endsWith(SUFFIX);
+			}
+		});
+		
+		if (files == null || files.length <= MAXIMUM_STORED_SNIPPETS){
+			return;
+		}
+		
+		Arrays.sort(files, new Comparator<File>() {
+			@Override
+			public int compare(File lhs, File rhs) {
+				return Longs.compare(lhs.lastModified(), rhs.lastModified());
+			}
+		});
+		
+		for (int i = 0; i < files.length - MAXIMUM_STORED_SNIPPETS; i++){
+			files[i].delete();
+		}
+	}
+	
+	private void write(File file, Map<String, byte[]> classes){
+		File temp = null;
+		try {
+			file.getParentFile().mkdirs();
+			temp = File.createTempFile("snippet", SUFFIX + ".tmp", file.getParentFile());
+			
+			ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			try {
+				out.writeObject(new HashMap<String, byte[]>(classes));
+			} finally {
+				out.close();
+			}
+			
+			if (!temp.renameTo(file)){
+				temp.delete();
+			}
+			
+			prune(file.getParentFile());
+		} catch (IOException ex) {
+			if (temp != null){
+				temp.delete();
+			}
+			CupidActivator.getDefault().logError("Error storing compiled snippet", ex);
+		}
 	}
 }
@@ -10,10 +10,16 @@
  ******************************************************************************/
 package edu.washington.cs.cupid.internal;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 import java.util.SortedSet;
 
 import com.google.common.base.Predicate;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.SetMultimap;
 import com.google.common.collect.Sets;
 import com.google.common.reflect.TypeToken;
 
@@ -24,10 +30,18 @@ import edu.washington.cs.cupid.capability.ICapability;
 import edu.washington.cs.cupid.capability.ICapabilityChangeListener;
 import edu.washington.cs.cupid.capability.ICapabilityPublisher;
 import edu.washington.cs.cupid.capability.ICapabilityRegistry;
+import edu.washington.cs.cupid.capability.IDynamicCapability;
 import edu.washington.cs.cupid.capability.exception.NoSuchCapabilityException;
+import edu.washington.cs.cupid.types.ITypeAdapter;
 
 /**
- * A thread-safe registry of the available Cupid capabilities.
+ * <p>A thread-safe registry of the available Cupid capabilities.</p>
+ * 
+ * <p>Capabilities are indexed by name, by the raw types of their parameters and outputs, and by whether 
+ * they are predicates; the indexes are updated as capabilities are added and removed. Type queries use 
+ * the indexes to find candidate capabilities, which are then checked with {@link TypeManager}. Dynamic 
+ * capabilities, whose signatures depend on other capabilities, and capabilities with array or primitive
+ * types are not indexed by type, and are always checked.</p>
  * @author Todd Schiller (tws@cs.washington.edu) 
  */
 public final class CapabilityRegistry implements ICapabilityRegistry {
@@ -37,6 +51,36 @@ public final class CapabilityRegistry implements ICapabilityRegistry {
 	 */
 	private final Set<ICapability> capabilities = Sets.newIdentityHashSet();
 	
+	/**
+	 * Capabilities by name. Names are not guaranteed to be unique.
+	 */
+	private final ListMultimap<String, ICapability> byName = ArrayListMultimap.create();
+	
+	/**
+	 * Raw Parameter Type -> Capabilities.
+	 */
+	private final SetMultimap<Class<?>, ICapability> byParameter = HashMultimap.create();
+	
+	/**
+	 * Raw Output Type, and its supertypes -> Capabilities.
+	 */
+	private final SetMultimap<Class<?>, ICapability> byOutput = HashMultimap.create();
+	
+	/**
+	 * Capabilities that are checked for every parameter type query.
+	 */
+	private final Set<ICapability> unindexedParameters = Sets.newIdentityHashSet();
+	
+	/**
+	 * Capabilities that are checked for every output type query, and every predicate query.
+	 */
+	private final Set<ICapability> unindexedOutputs = Sets.newIdentityHashSet();
+	
+	/**
+	 * Capabilities with a single boolean output.
+	 */
+	private final Set<ICapability> predicates = Sets.newIdentityHashSet();
+	
 	/**
 	 * Set of change listeners.
 	 */
@@ -44,15 +88,113 @@ public final class CapabilityRegistry implements ICapabilityRegistry {
 	
 	@Override
 	public void onCapabilityAdded(ICapability capability) {
-		capabilities.add(capability);
+		add(capability);
 		notifier.onCapabilityAdded(capability);
 	}
 
 	@Override
 	public void onCapabilityRemoved(ICapability capability) {
-		capabilities.remove(capability);
+		remove(capability);
 		notifier.onCapabilityRemoved(capability);
 	}
+	
+	/**
+	 * Adds <code>capability</code> to the registry and its indexes.
+	 * @param capability the capability
+	 */
+	private synchronized void add(final ICapability capability) {
+		if (!capabilities.add(capability)) {
+			return;
+		}
+		
+		byName.put(capability.getName(), capability);
+		
+		if (capability instanceof IDynamicCapability) {
+			unindexedParameters.add(capability);
+			unindexedOutputs.add(capability);
+			return;
+		}
+		
+		for (ICapability.IParameter<?> param : capability.getParameters()) {
+			Class<?> raw = param.getType().getRawType();
+			if (param.getType().equals(TypeToken.of(Void.class)) || raw.isArray() || raw.isPrimitive()) {
+				unindexedParameters.add(capability);
+			} else {
+				byParameter.put(raw, capability);
+			}
+		}
+		
+		for (ICapability.IOutput<?> output : capability.getOutputs()) {
+			Class<?> raw = output.getType().getRawType();
+			if (raw.isArray() || raw.isPrimitive()) {
+				unindexedOutputs.add(capability);
+			} else {
+				for (Class<?> supertype : TypeManager.getSupertypes(raw)) {
+					byOutput.put(supertype, capability);
+				}
+			}
+		}
+		
+		if (isPredicate(capability)) {
+			predicates.add(capability);
+		}
+	}
+	
+	/**
+	 * Removes <code>capability</code> from the registry and its indexes.
+	 * @param capability the capability
+	 */
+	private synchronized void remove(final ICapability capability) {
+		if (!capabilities.remove(capability)) {
+			return;
+		}
+		
+		byName.remove(capability.getName(), capability);
+		byParameter.values().removeAll(Collections.singleton(capability));
+		byOutput.values().removeAll(Collections.singleton(capability));
+		unindexedParameters.remove(capability);
+		unindexedOutputs.remove(capability);
+		predicates.remove(capability);
+	}
+	
+	/**
+	 * Returns <code>true</code> iff <code>capability</code> has exactly one boolean output.
+	 * @param capability the capability
+	 * @return <code>true</code> iff <code>capability</code> has exactly one boolean output
+	 */
+	private static boolean isPredicate(final ICapability capability) {
+		int bool = 0;
+		for (ICapability.IOutput<?> output : capability.getOutputs()){
+			if (TypeManager.isJavaCompatible(TypeToken.of(Boolean.class), output.getType())) {
+				bool++;
+			}
+		}
+		return bool == 1;
+	}
+	
+	/**
+	 * Returns the capabilities that may accept an argument of type <code>type</code>: capabilities 
+	 * with a parameter whose raw type is a supertype of <code>type</code>, or of a type that 
+	 * <code>type</code> can be adapted to, and the unindexed capabilities.
+	 * @param type the argument type
+	 * @return the capabilities that may accept an argument of type <code>type</code>
+	 */
+	private Set<ICapability> parameterCandidates(final TypeToken<?> type) {
+		Set<ICapability> result = Sets.newIdentityHashSet();
+		result.addAll(unindexedParameters);
+		
+		for (Class<?> supertype : TypeManager.getSupertypes(type.getRawType())) {
+			result.addAll(byParameter.get(supertype));
+		}
+		
+		for (ITypeAdapter<?, ?> adapter : TypeManager.getTypeAdapterRegistry().getTypeAdapters(type)) {
+			for (Class<?> supertype : TypeManager.getSupertypes(adapter.getOutputType().getRawType())) {
+				result.addAll(byParameter.get(supertype));
+			}
+		}
+		
+		return result;
+	}
 
 	
 	@Override
@@ -62,18 +204,17 @@ public final class CapabilityRegistry implements ICapabilityRegistry {
 
 	@Override
 	public synchronized ICapability findCapability(final String name) throws NoSuchCapabilityException {
-		for (ICapability capability : capabilities) {
-			if (capability.getName().equals(name)) {
-				return capability;
-			}	
+		List<ICapability> named = byName.get(name);
+		if (named.isEmpty()) {
+			throw new NoSuchCapabilityException(name);
 		}
-		throw new NoSuchCapabilityException(name);
+		return named.get(0);
 	}
 
 	@Override
 	public synchronized SortedSet<ICapability> getCapabilities(final TypeToken<?> type) {
 		SortedSet<ICapability> result = Sets.newTreeSet(CapabilityUtil.COMPARE_NAME);
-		for (ICapability capability : capabilities) {
+		for (ICapability capability : parameterCandidates(type)) {
 			for (ICapability.IParameter<?> param :  capability.getParameters()){
 				if (TypeManager.isCompatible(param, type)) {
 					result.add(capability);
@@ -103,7 +244,11 @@ public final class CapabilityRegistry implements ICapabilityRegistry {
 	public synchronized SortedSet<ICapability> getCapabilitiesForOutput(final TypeToken<?> outputType) {
 		SortedSet<ICapability> result = Sets.newTreeSet(CapabilityUtil.COMPARE_NAME);
 		
-		for (ICapability capability : capabilities) {
+		Set<ICapability> candidates = Sets.newIdentityHashSet();
+		candidates.addAll(unindexedOutputs);
+		candidates.addAll(byOutput.get(outputType.getRawType()));
+		
+		for (ICapability capability : candidates) {
 			for (ICapability.IOutput<?> output : capability.getOutputs()){
 				if (TypeManager.isJavaCompatible(outputType, output.getType())) {
 					result.add(capability);
@@ -116,7 +261,7 @@ public final class CapabilityRegistry implements ICapabilityRegistry {
 	
 
 	@Override
-	public SortedSet<ICapability> getCapabilities(Predicate<ICapability> filter) {
+	public synchronized SortedSet<ICapability> getCapabilities(Predicate<ICapability> filter) {
 		SortedSet<ICapability> result = Sets.newTreeSet(CapabilityUtil.COMPARE_NAME);
 		for (ICapability capability : capabilities) {
 			if (filter.apply(capability)){
@@ -130,15 +275,10 @@ public final class CapabilityRegistry implements ICapabilityRegistry {
 	@Override
 	public synchronized SortedSet<ICapability> getPredicates() {
 		SortedSet<ICapability> result = Sets.newTreeSet(CapabilityUtil.COMPARE_NAME);
+		result.addAll(predicates);
 		
-		for (ICapability capability : capabilities) {
-			Set<ICapability.IOutput<?>> bool = Sets.newHashSet();
-			for (ICapability.IOutput<?> output : capability.getOutputs()){
-				if (TypeManager.isJavaCompatible(TypeToken.of(Boolean.class), output.getType())) {
-					bool.add(output);
-				}
-			}
-			if (bool.size() == 1){
+		for (ICapability capability : unindexedOutputs) {
+			if (isPredicate(capability)){
 				result.add(capability);
 			}
 		}
@@ -176,7 +316,7 @@ public final class CapabilityRegistry implements ICapabilityRegistry {
 						"Publisher published capability without name: " + publisher.getClass().getName(), 
 						new IllegalArgumentException());
 			} else {
-				capabilities.add(published);
+				add(published);
 				notifier.onCapabilityAdded(published);
 			}
 		}
@@ -187,7 +327,7 @@ public final class CapabilityRegistry implements ICapabilityRegistry {
 		if (capability == null){
 			CupidActivator.getDefault().logError("Plug-in tried to register null capability", new NullPointerException());
 		} else {
-			capabilities.add(capability);
+			add(capability);
 			notifier.onCapabilityAdded(capability);
 		}
 	}
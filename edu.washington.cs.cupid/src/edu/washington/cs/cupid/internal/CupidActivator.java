@@ -71,6 +71,7 @@ public final class CupidActivator extends AbstractUIPlugin {
 	private static final String SCHEDULING_RULE_ID = "edu.washington.cs.cupid.schedulingRules"; //$NON-NLS-1$
 
 	private static final String EXTENSION_CLASS_PROPERTY = "class"; //$NON-NLS-1$
+	private static final String EXTENSION_COST_PROPERTY = "cost"; //$NON-NLS-1$
 	
 	private static CupidActivator plugin;
 	
@@ -196,10 +197,18 @@ public final class CupidActivator extends AbstractUIPlugin {
 			try {
 				
 				ITypeAdapter<?, ?> adapter = ((ITypeAdapter<?, ?>) extension.createExecutableExtension(EXTENSION_CLASS_PROPERTY));
-				TypeManager.getTypeAdapterRegistry().registerAdapter(adapter);
+				String cost = extension.getAttribute(EXTENSION_COST_PROPERTY);
+				
+				if (cost == null) {
+					TypeManager.getTypeAdapterRegistry().registerAdapter(adapter);
+				} else {
+					TypeManager.getTypeAdapterRegistry().registerAdapter(adapter, Integer.parseInt(cost.trim()));
+				}
 				
 			} catch (CoreException ex) {
 				logError("Error type adapter from extension " + extension.getName(), ex);
+			} catch (IllegalArgumentException ex) {
+				logError("Invalid cost for type adapter from extension " + extension.getName(), ex);
 			}
 		}
 	}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Todd Schiller.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Todd Schiller - initial API, implementation, and documentation
+ ******************************************************************************/
+package edu.washington.cs.cupid.internal;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.google.common.cache.Weigher;
+
+import edu.washington.cs.cupid.capability.ICapabilityOutputs;
+
+/**
+ * Estimates the retained size, in bytes, of capability outputs. The estimate is a heuristic:
+ * strings, boxed values, arrays, collections, and maps are measured (large collections are
+ * sampled); other objects, e.g., workspace handles, are charged a fixed amount since they are
+ * typically shared with the rest of the IDE.
+ * @author Todd Schiller (tws@cs.washington.edu)
+ */
+public final class OutputWeigher implements Weigher<Object, ICapabilityOutputs> {
+
+	private static final int OBJECT_OVERHEAD = 16;
+	private static final int REFERENCE_SIZE = 8;
+	private static final int OPAQUE_OBJECT_SIZE = 32;
+
+	/**
+	 * Maximum nesting depth that is measured; deeper values are charged as opaque objects.
+	 */
+	private static final int MAX_DEPTH = 4;
+
+	/**
+	 * Maximum number of elements measured per collection; the remaining elements are extrapolated.
+	 */
+	private static final int MAX_SAMPLE = 32;
+
+	@Override
+	public int weigh(final Object key, final ICapabilityOutputs value) {
+		long total = OBJECT_OVERHEAD;
+		for (Object output : value.getOutputs().values()) {
+			total += REFERENCE_SIZE + estimate(output, 0);
+		}
+		return (int) Math.min(total, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns the estimated retained size of <code>value</code>, in bytes.
+	 * @param value the value
+	 * @param depth the current nesting depth
+	 * @return the estimated retained size of <code>value</code>, in bytes
+	 */
+	private static long estimate(final Object value, final int depth) {
+		if (value == null) {
+			return 0;
+		} else if (value instanceof CharSequence) {
+			return OBJECT_OVERHEAD * 2 + 2L * ((CharSequence) value).length();
+		} else if (value instanceof Number || value instanceof Boolean || value instanceof Character || value instanceof Enum) {
+			return OBJECT_OVERHEAD;
+		} else if (depth >= MAX_DEPTH) {
+			return OPAQUE_OBJECT_SIZE;
+		} else if (value.getClass().isArray()) {
+			return estimateArray(value, depth);
+		} else if (value instanceof Collection) {
+			Collection<?> collection = (Collection<?>) value;
+			return OBJECT_OVERHEAD + estimateElements(collection.iterator(), collection.size(), depth);
+		} else if (value instanceof Map) {
+			Map<?, ?> map = (Map<?, ?>) value;
+			return OBJECT_OVERHEAD + estimateEntries(map, depth);
+		} else {
+			return OPAQUE_OBJECT_SIZE;
+		}
+	}
+
+	private static long estimateArray(final Object array, final int depth) {
+		int length = Array.getLength(array);
+		Class<?> component = array.getClass().getComponentType();
+
+		if (component.isPrimitive()) {
+			int size = (component == long.class || component == double.class) ? 8
+					: (component == int.class || component == float.class) ? 4
+					: (component == short.class || component == char.class) ? 2 : 1;
+			return OBJECT_OVERHEAD + (long) length * size;
+		} else {
+			long sampled = 0;
+			int n = Math.min(length, MAX_SAMPLE);
+			for (int i = 0; i < n; i++) {
+				sampled += estimate(Array.get(array, i), depth + 1);
+			}
+			return OBJECT_OVERHEAD + (long) length * REFERENCE_SIZE + extrapolate(sampled, n, length);
+		}
+	}
+
+	private static long estimateElements(final Iterator<?> elements, final int size, final int depth) {
+		long sampled = 0;
+		int n = 0;
+		while (elements.hasNext() && n < MAX_SAMPLE) {
+			sampled += estimate(elements.next(), depth + 1);
+			n++;
+		}
+		return (long) size * REFERENCE_SIZE + extrapolate(sampled, n, size);
+	}
+
+	private static long estimateEntries(final Map<?, ?> map, final int depth) {
+		long sampled = 0;
+		int n = 0;
+		for (Map.Entry<?, ?> entry : map.entrySet()) {
+			if (n >= MAX_SAMPLE) {
+				break;
+			}
+			sampled += OBJECT_OVERHEAD + estimate(entry.getKey(), depth + 1) + estimate(entry.getValue(), depth + 1);
+			n++;
+		}
+		return (long) map.size() * REFERENCE_SIZE + extrapolate(sampled, n, map.size());
+	}
+
+	private static long extrapolate(final long sampled, final int sampleSize, final int size) {
+		return sampleSize == 0 ? 0 : (sampled * size) / sampleSize;
+	}
+}
@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Todd Schiller.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Todd Schiller - initial API, implementation, and documentation
+ ******************************************************************************/
+package edu.washington.cs.cupid.internal;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IAdaptable;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.jdt.core.IJavaElement;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import edu.washington.cs.cupid.jobs.ISchedulingRuleRegistry;
+
+/**
+ * A trie of workspace paths used to find the keys affected by a resource change without scanning
+ * every key. Each key is indexed under the paths of the resources and Java elements it depends on;
+ * a key conflicts with a changed resource if it is indexed at the resource's path, at an ancestor,
+ * or at a descendant (mirroring {@link IResource#isConflicting(ISchedulingRule)}). Keys that depend
+ * on values without a workspace path are indexed by the values' scheduling rules instead, which
+ * are checked individually.
+ * @author Todd Schiller (tws@cs.washington.edu)
+ * @param <K> the key type
+ */
+public final class PathIndex<K> {
+
+	private final Node<K> root = new Node<K>();
+
+	/**
+	 * Key -> indexed paths; used to remove keys from the trie.
+	 */
+	private final Map<K, List<IPath>> paths = Maps.newHashMap();
+
+	/**
+	 * Keys for which dependencies could not be determined by path: Key -> Scheduling Rules.
+	 */
+	private final Map<K, List<ISchedulingRule>> unindexed = Maps.newHashMap();
+
+	private static final class Node<K> {
+		private final Map<String, Node<K>> children = Maps.newHashMap();
+		private final Set<K> keys = Sets.newHashSet();
+	}
+
+	/**
+	 * Index <code>key</code> under the dependencies of <code>values</code>, replacing any
+	 * existing entry for the key.
+	 * @param key the key
+	 * @param values the values the key depends on
+	 * @param scheduler the rule registry for values without a workspace path
+	 */
+	public synchronized void add(final K key, final Collection<?> values, final ISchedulingRuleRegistry scheduler) {
+		remove(key);
+
+		List<IPath> keyPaths = Lists.newArrayList();
+		List<ISchedulingRule> keyRules = Lists.newArrayList();
+
+		for (Object value : values) {
+			collect(value, scheduler, keyPaths, keyRules);
+		}
+
+		for (IPath path : keyPaths) {
+			Node<K> node = root;
+			for (String segment : path.segments()) {
+				Node<K> child = node.children.get(segment);
+				if (child == null) {
+					child = new Node<K>();
+					node.children.put(segment, child);
+				}
+				node = child;
+			}
+			node.keys.add(key);
+		}
+
+		paths.put(key, keyPaths);
+
+		if (!keyRules.isEmpty()) {
+			unindexed.put(key, keyRules);
+		}
+	}
+
+	/**
+	 * Remove <code>key</code> from the index. Does nothing if the key is not indexed.
+	 * @param key the key
+	 */
+	public synchronized void remove(final K key) {
+		List<IPath> keyPaths = paths.remove(key);
+		unindexed.remove(key);
+
+		if (keyPaths != null) {
+			for (IPath path : keyPaths) {
+				remove(root, path.segments(), 0, key);
+			}
+		}
+	}
+
+	/**
+	 * Removes <code>key</code> from the node at <code>segments</code>, pruning empty nodes.
+	 * @return <code>true</code> iff <code>node</code> is empty after removal
+	 */
+	private boolean remove(final Node<K> node, final String[] segments, final int depth, final K key) {
+		if (depth == segments.length) {
+			node.keys.remove(key);
+		} else {
+			Node<K> child = node.children.get(segments[depth]);
+			if (child != null && remove(child, segments, depth + 1, key)) {
+				node.children.remove(segments[depth]);
+			}
+		}
+		return node.keys.isEmpty() && node.children.isEmpty();
+	}
+
+	/**
+	 * Returns the keys that conflict with a change to <code>resource</code>.
+	 * @param resource the changed resource
+	 * @return the keys that conflict with a change to <code>resource</code>
+	 */
+	public synchronized Set<K> conflicting(final IResource resource) {
+		Set<K> result = Sets.newHashSet();
+
+		// the resource and its ancestors
+		Node<K> node = root;
+		result.addAll(node.keys);
+		for (String segment : resource.getFullPath().segments()) {
+			node = node.children.get(segment);
+			if (node == null) {
+				break;
+			}
+			result.addAll(node.keys);
+		}
+
+		// descendants of the resource
+		if (node != null) {
+			collectSubtree(node, result);
+		}
+
+		for (Map.Entry<K, List<ISchedulingRule>> entry : unindexed.entrySet()) {
+			for (ISchedulingRule rule : entry.getValue()) {
+				if (resource.isConflicting(rule)) {
+					result.add(entry.getKey());
+					break;
+				}
+			}
+		}
+
+		return result;
+	}
+
+	private static <K> void collectSubtree(final Node<K> node, final Set<K> result) {
+		for (Node<K> child : node.children.values()) {
+			result.addAll(child.keys);
+			collectSubtree(child, result);
+		}
+	}
+
+	/**
+	 * Collects the workspace paths (or, if a value has no path, the scheduling rule) for <code>value</code>.
+	 */
+	private static void collect(final Object value, final ISchedulingRuleRegistry scheduler, final List<IPath> paths, final List<ISchedulingRule> rules) {
+		if (value == null) {
+			return;
+		} else if (value instanceof IResource) {
+			paths.add(((IResource) value).getFullPath());
+		} else if (value instanceof IJavaElement) {
+			IPath path = ((IJavaElement) value).getPath();
+			if (path != null) {
+				paths.add(path);
+			}
+		} else if (value instanceof Iterable) {
+			for (Object element : (Iterable<?>) value) {
+				collect(element, scheduler, paths, rules);
+			}
+		} else if (value instanceof IAdaptable && ((IAdaptable) value).getAdapter(IResource.class) != null) {
+			paths.add(((IResource) ((IAdaptable) value).getAdapter(IResource.class)).getFullPath());
+		} else {
+			ISchedulingRule rule = scheduler.getSchedulingRule(value);
+			if (!(rule instanceof SchedulingRuleRegistry.NullSchedulingRule)) {
+				rules.add(rule);
+			}
+		}
+	}
+}
@@ -0,0 +1,489 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Todd Schiller.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Todd Schiller - initial API, implementation, and documentation
+ ******************************************************************************/
+package edu.washington.cs.cupid.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IAdaptable;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.jdt.core.IJavaElement;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.FrameworkUtil;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.google.common.primitives.Longs;
+
+import edu.washington.cs.cupid.capability.CapabilityOutputs;
+import edu.washington.cs.cupid.capability.ICapability;
+import edu.washington.cs.cupid.capability.ICapability.Flag;
+import edu.washington.cs.cupid.capability.ICapability.IOutput;
+import edu.washington.cs.cupid.capability.ICapability.IParameter;
+import edu.washington.cs.cupid.capability.ICapabilityArguments;
+import edu.washington.cs.cupid.capability.ICapabilityOutputs;
+
+/**
+ * <p>A second-level result cache that stores the serializable outputs of pure capabilities on disk,
+ * so that results survive restarts.</p>
+ *
+ * <p>Only inputs that depend on a single workspace file (e.g., a file or a Java element in a
+ * compilation unit), plus simple values, are stored. Entries are keyed by the capability name, a 
+ * fingerprint of the capability's definition (the version of the contributing plug-in and, for 
+ * serializable capabilities, the serialized capability), and a fingerprint of the input that includes 
+ * the file's modification stamp, so a result computed by an old definition of the capability or for an 
+ * old version of the file is never returned. Entries are grouped by file so that they can be deleted 
+ * when the file, or a container of the file, changes or is removed. At most {@link #MAXIMUM_STORED_GROUPS} 
+ * groups are stored; the least recently used groups are deleted first.</p>
+ *
+ * @author Todd Schiller (tws@cs.washington.edu)
+ */
+public final class PersistentResultCache {
+
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+
+	private static final String SUFFIX = ".ser";
+	
+	/**
+	 * The name of the file in each group that records the path of the group's workspace file.
+	 */
+	private static final String PATH_FILE = "path";
+	
+	/**
+	 * The maximum number of files for which results are stored.
+	 */
+	private static final int MAXIMUM_STORED_GROUPS = 1024;
+
+	private final File directory;
+	
+	/**
+	 * Group -> path of the group's workspace file, for the groups stored in the cache directory; read from 
+	 * the disk when first needed, and then kept up to date. Use {@link #groups()} to access.
+	 */
+	private Map<File, String> groups = null;
+	
+	/**
+	 * Capability -> fingerprint of the capability's definition.
+	 */
+	private final Map<ICapability, String> definitions = new MapMaker().weakKeys().makeMap();
+
+	private static final Comparator<IParameter<?>> COMPARE_NAME = new Comparator<IParameter<?>>() {
+		@Override
+		public int compare(final IParameter<?> lhs, final IParameter<?> rhs) {
+			return lhs.getName().compareTo(rhs.getName());
+		}
+	};
+
+	/**
+	 * A location in the cache for a capability and input.
+	 * @author Todd Schiller (tws@cs.washington.edu)
+	 */
+	public static final class Entry {
+		private final String fingerprint;
+		private final String path;
+		private final File file;
+
+		private Entry(final String fingerprint, final String path, final File file) {
+			this.fingerprint = fingerprint;
+			this.path = path;
+			this.file = file;
+		}
+	}
+
+	/**
+	 * Construct a cache that stores entries under <code>directory</code>.
+	 * @param directory the cache directory
+	 */
+	public PersistentResultCache(final File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Returns the cache location for the result of <code>capability</code> on <code>input</code>, or
+	 * <code>null</code> if the result cannot be stored. Does not access the disk.
+	 * @param capability the capability
+	 * @param input the input
+	 * @return the cache location for the result, or <code>null</code> if the result cannot be stored
+	 */
+	public Entry locate(final ICapability capability, final ICapabilityArguments input) {
+		if (!capability.getFlags().contains(Flag.PURE)
+				|| capability.getFlags().contains(Flag.TRANSIENT)
+				|| capability.getFlags().contains(Flag.AUTO_GENERATED)
+				|| capability.getName() == null) {
+			return null;
+		}
+
+		List<IParameter<?>> parameters = Lists.newArrayList(input.getArguments().keySet());
+		Collections.sort(parameters, COMPARE_NAME);
+
+		String definition = definition(capability);
+		if (definition == null) {
+			return null;
+		}
+		
+		StringBuilder fingerprint = new StringBuilder(capability.getName()).append('\0').append(definition);
+		IResource file = null;
+
+		for (IParameter<?> parameter : parameters) {
+			Object value = input.getArguments().get(parameter);
+			fingerprint.append('\0').append(parameter.getName()).append('=');
+
+			if (value == null) {
+				fingerprint.append("null");
+			} else if (value instanceof String || value instanceof Number || value instanceof Boolean
+					|| value instanceof Character || value instanceof Enum) {
+				fingerprint.append(value.getClass().getName()).append(':').append(value);
+			} else {
+				IResource resource = resource(value);
+
+				if (file != null || resource == null || resource.getType() != IResource.FILE
+						|| resource.getModificationStamp() == IResource.NULL_STAMP) {
+					return null;
+				}
+
+				file = resource;
+				fingerprint.append(value instanceof IJavaElement
+						? ((IJavaElement) value).getHandleIdentifier()
+						: resource.getFullPath().toPortableString());
+				fingerprint.append('@').append(resource.getModificationStamp()).append(':').append(resource.getLocalTimeStamp());
+			}
+		}
+
+		if (file == null) {
+			return null;
+		}
+
+		String name = Hashing.sha1().hashString(fingerprint, CHARSET).toString() + SUFFIX;
+		return new Entry(fingerprint.toString(), file.getFullPath().toPortableString(), new File(group(file), name));
+	}
+
+	/**
+	 * Returns the stored result for <code>entry</code>, or <code>null</code> if no result is stored.
+	 * @param capability the capability that produced the result
+	 * @param entry the cache location
+	 * @return the stored result for <code>entry</code>, or <code>null</code>
+	 */
+	public ICapabilityOutputs load(final ICapability capability, final Entry entry) {
+		if (!entry.file.exists()) {
+			return null;
+		}
+
+		try {
+			ObjectInputStream in = new BundleObjectInputStream(new BufferedInputStream(new FileInputStream(entry.file)));
+			try {
+				if (!entry.fingerprint.equals(in.readObject())) {
+					return null;
+				}
+
+				@SuppressWarnings("unchecked") // checked when the entry was stored
+				Map<String, Object> named = (Map<String, Object>) in.readObject();
+
+				CapabilityOutputs result = new CapabilityOutputs();
+				for (IOutput<?> output : capability.getOutputs()) {
+					if (!named.containsKey(output.getName())) {
+						return null;
+					}
+					add(result, output, named.get(output.getName()));
+				}
+				
+				// record the use, so that the group is not pruned before unused groups
+				entry.file.getParentFile().setLastModified(System.currentTimeMillis());
+				return result;
+			} finally {
+				in.close();
+			}
+		} catch (Exception e) {
+			// the stored classes may have changed since the result was stored
+			entry.file.delete();
+			return null;
+		}
+	}
+
+	/**
+	 * Returns a fingerprint of the definition of <code>capability</code>, or <code>null</code> if the
+	 * definition cannot be identified: the symbolic name and version of the plug-in contributing the
+	 * capability's class, and the hash of the serialized capability for serializable capabilities
+	 * (e.g., pipelines and snippets, whose definitions can change without changing their names).
+	 * @param capability the capability
+	 * @return a fingerprint of the definition of <code>capability</code>, or <code>null</code>
+	 */
+	private String definition(final ICapability capability) {
+		String cached = definitions.get(capability);
+		if (cached != null) {
+			return cached;
+		}
+		
+		StringBuilder result = new StringBuilder();
+		
+		Bundle bundle = FrameworkUtil.getBundle(capability.getClass());
+		if (bundle != null) {
+			result.append(bundle.getSymbolicName()).append('_').append(bundle.getVersion());
+		}
+		
+		if (capability instanceof Serializable) {
+			try {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				ObjectOutputStream out = new ObjectOutputStream(bytes);
+				try {
+					out.writeObject(capability);
+				} finally {
+					out.close();
+				}
+				result.append('#').append(Hashing.sha1().hashBytes(bytes.toByteArray()).toString());
+			} catch (IOException e) {
+				// the capability references a value that cannot be serialized
+				return null;
+			}
+		} else if (bundle == null) {
+			return null;
+		}
+		
+		definitions.put(capability, result.toString());
+		return result.toString();
+	}
+
+	@SuppressWarnings("unchecked") // the value was produced for the output
+	private static <T> void add(final CapabilityOutputs result, final IOutput<T> output, final Object value) {
+		result.add(output, (T) value);
+	}
+
+	/**
+	 * Stores <code>outputs</code> at <code>entry</code>. Does nothing if any of the outputs
+	 * is not serializable.
+	 * @param entry the cache location
+	 * @param outputs the result
+	 */
+	public void store(final Entry entry, final ICapabilityOutputs outputs) {
+		HashMap<String, Object> named = Maps.newHashMap();
+		for (Map.Entry<IOutput<?>, Object> output : outputs.getOutputs().entrySet()) {
+			if (output.getValue() != null && !(output.getValue() instanceof Serializable)) {
+				return;
+			}
+			named.put(output.getKey().getName(), output.getValue());
+		}
+
+		File group = entry.file.getParentFile();
+		File temp = null;
+
+		try {
+			if (!group.isDirectory()) {
+				create(group, entry.path);
+			}
+			
+			temp = File.createTempFile("result", SUFFIX + ".tmp", group);
+
+			ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			try {
+				out.writeObject(entry.fingerprint);
+				out.writeObject(named);
+			} finally {
+				out.close();
+			}
+
+			entry.file.delete();
+			if (!temp.renameTo(entry.file)) {
+				temp.delete();
+			}
+			
+			group.setLastModified(System.currentTimeMillis());
+			prune();
+		} catch (NotSerializableException e) {
+			// an output contains a value that cannot be serialized
+			temp.delete();
+		} catch (IOException e) {
+			if (temp != null) {
+				temp.delete();
+			}
+			CupidActivator.getDefault().logError("Error storing result in the persistent cache", e);
+		}
+	}
+
+	/**
+	 * Deletes the stored results for inputs that depend on <code>resource</code>, or on a member of
+	 * <code>resource</code>.
+	 * @param resource the changed or removed resource
+	 */
+	public void invalidate(final IResource resource) {
+		if (resource.getType() == IResource.FILE) {
+			delete(group(resource));
+		} else {
+			IPath container = resource.getFullPath();
+			for (Map.Entry<File, String> group : groups().entrySet()) {
+				if (container.isPrefixOf(Path.fromPortableString(group.getValue()))) {
+					delete(group.getKey());
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Creates the directory <code>group</code> for the results of the workspace file <code>path</code>. The 
+	 * directory is created with its path file under a temporary name, and then renamed, so that every group
+	 * in the cache directory has a path file.
+	 * @param group the group
+	 * @param path the path of the group's workspace file
+	 * @throws IOException if the group cannot be created
+	 */
+	private void create(final File group, final String path) throws IOException {
+		directory.mkdirs();
+		
+		File temp = File.createTempFile("group", ".tmp", directory);
+		if (!temp.delete() || !temp.mkdir()) {
+			throw new IOException("Error creating directory " + temp);
+		}
+		
+		Files.write(path, new File(temp, PATH_FILE), CHARSET);
+		
+		if (!temp.renameTo(group)) {
+			// the group was created concurrently
+			delete(temp);
+			if (!group.isDirectory()) {
+				throw new IOException("Error creating directory " + group);
+			}
+		}
+		groups().put(group, path);
+	}
+	
+	/**
+	 * Deletes the least recently used groups once more than {@link #MAXIMUM_STORED_GROUPS} are stored,
+	 * leaving three quarters of the maximum, so that the groups are not sorted on every store.
+	 */
+	private void prune() {
+		Map<File, String> stored = groups();
+		if (stored.size() <= MAXIMUM_STORED_GROUPS) {
+			return;
+		}
+		
+		List<File> used = Lists.newArrayList(stored.keySet());
+		final Map<File, Long> modified = Maps.newHashMap();
+		for (File group : used) {
+			modified.put(group, group.lastModified());
+		}
+		
+		Collections.sort(used, new Comparator<File>() {
+			@Override
+			public int compare(final File lhs, final File rhs) {
+				return Longs.compare(modified.get(lhs), modified.get(rhs));
+			}
+		});
+		
+		for (File group : used.subList(0, used.size() - MAXIMUM_STORED_GROUPS * 3 / 4)) {
+			delete(group);
+		}
+	}
+	
+	/**
+	 * Returns the groups stored in the cache directory, reading the groups' path files the first time the 
+	 * groups are needed. Directories without a path file that are not being created were stored by an 
+	 * earlier version of the cache, and are deleted.
+	 * @return group -> path of the group's workspace file
+	 */
+	private synchronized Map<File, String> groups() {
+		if (groups == null) {
+			groups = new ConcurrentHashMap<File, String>();
+			
+			File[] stored = directory.listFiles();
+			if (stored != null) {
+				for (File group : stored) {
+					File path = new File(group, PATH_FILE);
+					if (!group.isDirectory() || group.getName().endsWith(".tmp")) {
+						continue;
+					} else if (path.isFile()) {
+						try {
+							groups.put(group, Files.toString(path, CHARSET));
+						} catch (IOException e) {
+							delete(group);
+						}
+					} else {
+						delete(group);
+					}
+				}
+			}
+		}
+		return groups;
+	}
+	
+	private void delete(final File group) {
+		File[] entries = group.listFiles();
+		if (entries != null) {
+			for (File file : entries) {
+				file.delete();
+			}
+			group.delete();
+		}
+		groups().remove(group);
+	}
+
+	/**
+	 * Returns the directory holding the stored results for inputs that depend on <code>file</code>.
+	 */
+	private File group(final IResource file) {
+		return new File(directory, Hashing.sha1().hashString(file.getFullPath().toPortableString(), CHARSET).toString());
+	}
+
+	/**
+	 * Returns the workspace resource underlying <code>value</code>, or <code>null</code>.
+	 */
+	private static IResource resource(final Object value) {
+		if (value instanceof IResource) {
+			return (IResource) value;
+		} else if (value instanceof IJavaElement) {
+			return ((IJavaElement) value).getResource();
+		} else if (value instanceof IAdaptable) {
+			return (IResource) ((IAdaptable) value).getAdapter(IResource.class);
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Resolves classes using the plug-in's class loader, which can see the classes of the
+	 * plug-ins that contribute capabilities.
+	 * @author Todd Schiller (tws@cs.washington.edu)
+	 */
+	private static final class BundleObjectInputStream extends ObjectInputStream {
+		private BundleObjectInputStream(final InputStream in) throws IOException {
+			super(in);
+		}
+
+		@Override
+		protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+			try {
+				return Class.forName(desc.getName(), false, PersistentResultCache.class.getClassLoader());
+			} catch (ClassNotFoundException e) {
+				return super.resolveClass(desc);
+			}
+		}
+	}
+}
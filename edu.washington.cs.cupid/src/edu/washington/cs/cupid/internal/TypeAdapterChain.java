@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Todd Schiller.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Todd Schiller - initial API, implementation, and documentation
+ ******************************************************************************/
+package edu.washington.cs.cupid.internal;
+
+import java.util.List;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.reflect.TypeToken;
+
+import edu.washington.cs.cupid.types.ITypeAdapter;
+
+/**
+ * A type adapter that applies a chain of type adapters in order, e.g., <code>ICompilationUnit</code> to
+ * <code>IFile</code> to <code>IProject</code>.
+ * @author Todd Schiller (tws@cs.washington.edu)
+ */
+public final class TypeAdapterChain implements ITypeAdapter<Object, Object> {
+
+	private final List<ITypeAdapter<?, ?>> adapters;
+	
+	/**
+	 * Construct a type adapter that applies <code>adapters</code> in order.
+	 * @param adapters the adapters, each of which accepts the output of the previous adapter
+	 */
+	public TypeAdapterChain(final List<ITypeAdapter<?, ?>> adapters) {
+		if (adapters.isEmpty()) {
+			throw new IllegalArgumentException("Type adapter chain must contain at least one adapter");
+		}
+		this.adapters = ImmutableList.copyOf(adapters);
+	}
+	
+	/**
+	 * Returns the adapters in the chain, in the order they are applied.
+	 * @return the adapters in the chain
+	 */
+	public List<ITypeAdapter<?, ?>> getAdapters() {
+		return adapters;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public TypeToken<Object> getInputType() {
+		return (TypeToken<Object>) adapters.get(0).getInputType();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public TypeToken<Object> getOutputType() {
+		return (TypeToken<Object>) adapters.get(adapters.size() - 1).getOutputType();
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Override
+	public Object adapt(final Object input) {
+		Object result = input;
+		for (ITypeAdapter adapter : adapters) {
+			if (result == null) {
+				return null;
+			}
+			result = adapter.adapt(result);
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return Joiner.on(" -> ").join(adapters);
+	}
+}
@@ -10,11 +10,20 @@
  ******************************************************************************/
 package edu.washington.cs.cupid.internal;
 
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
+import com.google.common.base.Optional;
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.collect.Table;
 import com.google.common.reflect.TypeToken;
 
 import edu.washington.cs.cupid.TypeManager;
@@ -22,41 +31,184 @@ import edu.washington.cs.cupid.types.ITypeAdapter;
 import edu.washington.cs.cupid.types.ITypeAdapterRegistry;
 
 /**
- * The registry of Cupid type adapters.
+ * <p>The registry of Cupid type adapters.</p>
+ * 
+ * <p>The adapters form a graph over types; a value can be adapted by a chain of adapters, e.g., 
+ * <code>ICompilationUnit</code> to <code>IFile</code> to <code>IProject</code>. For each input type, 
+ * the cheapest chain to each reachable type is computed once (ties are broken by chain length, and then
+ * by registration order) and cached until another adapter is registered.</p>
  * @author Todd Schiller
  */
 public final class TypeAdapterRegistry implements ITypeAdapterRegistry {
 
-	private Multimap<TypeToken<?>, ITypeAdapter<?, ?>> registry = HashMultimap.create();
+	/**
+	 * The cost of adapters registered without a cost.
+	 */
+	public static final int DEFAULT_COST = 1;
+	
+	/**
+	 * The maximum number of adapters in a chain.
+	 */
+	private static final int MAXIMUM_CHAIN_LENGTH = 4;
+	
+	/**
+	 * Adapter -> Cost, in registration order.
+	 */
+	private final Map<ITypeAdapter<?, ?>, Integer> registry = Maps.newLinkedHashMap();
+	
+	/**
+	 * Input Type -> Cheapest route to each reachable type, ordered by cost.
+	 */
+	private final Map<TypeToken<?>, List<Route>> routes = Maps.newHashMap();
+	
+	/**
+	 * (Input Type, Output Type) -> Cheapest adapter.
+	 */
+	private final Table<TypeToken<?>, TypeToken<?>, Optional<ITypeAdapter<?, ?>>> lookup = HashBasedTable.create();
+	
+	/**
+	 * A chain of adapters from an input type to <code>type</code>.
+	 */
+	private static final class Route {
+		private final TypeToken<?> type;
+		private final int cost;
+		private final List<ITypeAdapter<?, ?>> adapters;
+		
+		/**
+		 * Discovery order; used to break ties deterministically.
+		 */
+		private final int order;
+		
+		private Route(final TypeToken<?> type, final int cost, final List<ITypeAdapter<?, ?>> adapters, final int order) {
+			this.type = type;
+			this.cost = cost;
+			this.adapters = adapters;
+			this.order = order;
+		}
+		
+		private ITypeAdapter<?, ?> getAdapter() {
+			return adapters.size() == 1 ? adapters.get(0) : new TypeAdapterChain(adapters);
+		}
+	}
+	
+	private static final Comparator<Route> COMPARE_COST = new Comparator<Route>() {
+		@Override
+		public int compare(final Route lhs, final Route rhs) {
+			if (lhs.cost != rhs.cost) {
+				return lhs.cost < rhs.cost ? -1 : 1;
+			} else if (lhs.adapters.size() != rhs.adapters.size()) {
+				return lhs.adapters.size() < rhs.adapters.size() ? -1 : 1;
+			} else {
+				return lhs.order < rhs.order ? -1 : (lhs.order == rhs.order ? 0 : 1);
+			}
+		}
+	};
 	
 	@Override
 	public void registerAdapter(final ITypeAdapter<?, ?> adapter) {
-		TypeToken<?> inputType = adapter.getInputType();
-		registry.put(inputType, adapter);
+		registerAdapter(adapter, DEFAULT_COST);
 	}
 	
 	@Override
-	public ITypeAdapter<?, ?>[] getTypeAdapters(final TypeToken<?> inputType) {
-		Set<ITypeAdapter<?, ?>> result = Sets.newHashSet();
+	public void registerAdapter(final ITypeAdapter<?, ?> adapter, final int cost) {
+		if (cost <= 0) {
+			throw new IllegalArgumentException("Type adapter cost must be positive: " + cost);
+		}
 		
-		for (TypeToken<?> adapterInput : registry.keys()) {
-			if (TypeManager.isJavaCompatible(adapterInput, inputType)) {
-				result.addAll(registry.get(adapterInput));
-			}
+		synchronized (this) {
+			registry.put(adapter, cost);
+			routes.clear();
+			lookup.clear();
+		}
+		
+		TypeManager.clearCompatibilityCache();
+	}
+	
+	@Override
+	public synchronized ITypeAdapter<?, ?>[] getTypeAdapters(final TypeToken<?> inputType) {
+		List<ITypeAdapter<?, ?>> result = Lists.newArrayList();
+		
+		for (Route route : getRoutes(inputType)) {
+			result.add(route.getAdapter());
 		}
 		
 		return result.toArray(new ITypeAdapter[]{});
 	}
 
 	@Override
-	public ITypeAdapter<?, ?> getTypeAdapter(final TypeToken<?> inputType, final TypeToken<?> outputType) {
-		ITypeAdapter<?, ?> result = null;
-		for (ITypeAdapter<?, ?> adapter : getTypeAdapters(inputType)) {
-			if (TypeManager.isJavaCompatible(outputType, adapter.getOutputType())) {
-				result = adapter;
+	public synchronized ITypeAdapter<?, ?> getTypeAdapter(final TypeToken<?> inputType, final TypeToken<?> outputType) {
+		Optional<ITypeAdapter<?, ?>> result = lookup.get(inputType, outputType);
+		
+		if (result == null) {
+			result = Optional.absent();
+			
+			// routes are ordered by cost, so the first compatible route is the cheapest
+			for (Route route : getRoutes(inputType)) {
+				if (TypeManager.isJavaCompatible(outputType, route.type)) {
+					result = Optional.<ITypeAdapter<?, ?>>of(route.getAdapter());
+					break;
+				}
 			}
+			
+			lookup.put(inputType, outputType, result);
+		}
+		
+		return result.orNull();
+	}
+	
+	/**
+	 * Returns the cheapest route from <code>inputType</code> to each reachable type, ordered by cost.
+	 */
+	private List<Route> getRoutes(final TypeToken<?> inputType) {
+		List<Route> result = routes.get(inputType);
+		if (result == null) {
+			result = computeRoutes(inputType);
+			routes.put(inputType, result);
 		}
 		return result;
 	}
-
+	
+	/**
+	 * Computes the cheapest route from <code>inputType</code> to each reachable type, using Dijkstra's algorithm.
+	 */
+	private List<Route> computeRoutes(final TypeToken<?> inputType) {
+		List<Route> result = Lists.newArrayList();
+		Set<TypeToken<?>> settled = Sets.newHashSet();
+		
+		PriorityQueue<Route> queue = new PriorityQueue<Route>(Math.max(1, registry.size()), COMPARE_COST);
+		int order = 0;
+		queue.add(new Route(inputType, 0, Collections.<ITypeAdapter<?, ?>>emptyList(), order++));
+		
+		while (!queue.isEmpty()) {
+			Route route = queue.poll();
+			
+			if (!settled.add(route.type)) {
+				// a cheaper route to the type was already found
+				continue;
+			}
+			
+			if (!route.adapters.isEmpty()) {
+				result.add(route);
+			}
+			
+			if (route.adapters.size() < MAXIMUM_CHAIN_LENGTH) {
+				for (Map.Entry<ITypeAdapter<?, ?>, Integer> entry : registry.entrySet()) {
+					ITypeAdapter<?, ?> adapter = entry.getKey();
+					
+					if (!settled.contains(adapter.getOutputType()) 
+							&& TypeManager.isJavaCompatible(adapter.getInputType(), route.type)) {
+						
+						List<ITypeAdapter<?, ?>> adapters = ImmutableList.<ITypeAdapter<?, ?>>builder()
+								.addAll(route.adapters)
+								.add(adapter)
+								.build();
+						
+						queue.add(new Route(adapter.getOutputType(), route.cost + entry.getValue(), adapters, order++));
+					}
+				}
+			}
+		}
+		
+		return Collections.unmodifiableList(result);
+	}
 }
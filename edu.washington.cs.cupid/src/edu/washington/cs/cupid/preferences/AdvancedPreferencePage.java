@@ -12,6 +12,7 @@ package edu.washington.cs.cupid.preferences;
 
 import org.eclipse.jface.preference.BooleanFieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
+import org.eclipse.jface.preference.IntegerFieldEditor;
 import org.eclipse.jface.preference.ScaleFieldEditor;
 import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.IWorkbenchPreferencePage;
@@ -26,6 +27,9 @@ public final class AdvancedPreferencePage extends FieldEditorPreferencePage impl
 
 	private static final int MAXIMUM_CANCELATION_SECONDS = 15;
 	private static final int MINIMUM_CANCELATION_SECONDS = 2;
+	private static final int MAXIMUM_CACHE_SIZE_MB = 4096;
+	private static final int MAXIMUM_CACHE_EXPIRE_MINUTES = 24 * 60;
+	private static final int MAXIMUM_PARALLELISM = 64;
 
 	/**
 	 * Construct the Cupid advanced options preference page.
@@ -50,6 +54,39 @@ public final class AdvancedPreferencePage extends FieldEditorPreferencePage impl
 					"Enable cache status logging (i.e., hits and ejections)",
 					getFieldEditorParent()));
 		
+		addField(
+				new BooleanFieldEditor(
+					PreferenceConstants.P_CACHE_BOUNDED,
+					"Limit the size of the result cache",
+					getFieldEditorParent()));
+		
+		IntegerFieldEditor maximumSize = new IntegerFieldEditor(
+				PreferenceConstants.P_CACHE_MAXIMUM_SIZE_MB,
+				"Maximum result cache size (MB):",
+				getFieldEditorParent());
+		maximumSize.setValidRange(1, MAXIMUM_CACHE_SIZE_MB);
+		addField(maximumSize);
+		
+		IntegerFieldEditor expire = new IntegerFieldEditor(
+				PreferenceConstants.P_CACHE_EXPIRE_MINUTES,
+				"Eject unused results after (minutes, 0 to disable):",
+				getFieldEditorParent());
+		expire.setValidRange(0, MAXIMUM_CACHE_EXPIRE_MINUTES);
+		addField(expire);
+		
+		addField(
+				new BooleanFieldEditor(
+					PreferenceConstants.P_CACHE_PERSISTENT,
+					"Keep results of pure capabilities between sessions",
+					getFieldEditorParent()));
+		
+		IntegerFieldEditor parallelism = new IntegerFieldEditor(
+				PreferenceConstants.P_PARALLELISM,
+				"Maximum list elements computed in parallel (1 to disable):",
+				getFieldEditorParent());
+		parallelism.setValidRange(1, MAXIMUM_PARALLELISM);
+		addField(parallelism);
+		
 		addField(
 				new ScaleFieldEditor(
 					PreferenceConstants.P_INSPECTOR_KILL_TIME_SECONDS,
@@ -39,6 +39,32 @@ public final class PreferenceConstants {
 	 */
 	public static final String P_CACHE_STATUS_LOGGING = "cacheStatusLoggingPreference";
 	
+	/**
+	 * Bound the size of the capability result cache.
+	 */
+	public static final String P_CACHE_BOUNDED = "cacheBoundedPreference";
+	
+	/**
+	 * Maximum estimated size of the capability result cache, in megabytes.
+	 */
+	public static final String P_CACHE_MAXIMUM_SIZE_MB = "cacheMaximumSizePreference";
+	
+	/**
+	 * Minutes after last access before a cached result is ejected; <code>0</code> to disable.
+	 */
+	public static final String P_CACHE_EXPIRE_MINUTES = "cacheExpireMinutesPreference";
+	
+	/**
+	 * Store the serializable results of pure capabilities in the plug-in state location, so that
+	 * they survive restarts.
+	 */
+	public static final String P_CACHE_PERSISTENT = "cachePersistentPreference";
+	
+	/**
+	 * Maximum number of list elements that are computed concurrently by lifted capabilities.
+	 */
+	public static final String P_PARALLELISM = "parallelismPreference";
+	
 	/**
 	 * Time to wait before killing jobs spawned by the selection inspector.
 	 */
@@ -28,6 +28,8 @@ import edu.washington.cs.cupid.views.ViewRule;
 public final class PreferenceInitializer extends AbstractPreferenceInitializer {
 
 	private static final int DEFAULT_INSPECTOR_KILL_TIME_SECONDS = 10;
+	
+	private static final int DEFAULT_CACHE_MAXIMUM_SIZE_MB = 64;
 
 	@Override
 	public void initializeDefaultPreferences() {
@@ -35,6 +37,11 @@ public final class PreferenceInitializer extends AbstractPreferenceInitializer {
 		store.setDefault(PreferenceConstants.P_IMPURE, false);
 		store.setDefault(PreferenceConstants.P_JOB_STATUS_LOGGING, false);
 		store.setDefault(PreferenceConstants.P_CACHE_STATUS_LOGGING, false);
+		store.setDefault(PreferenceConstants.P_CACHE_BOUNDED, true);
+		store.setDefault(PreferenceConstants.P_CACHE_MAXIMUM_SIZE_MB, DEFAULT_CACHE_MAXIMUM_SIZE_MB);
+		store.setDefault(PreferenceConstants.P_CACHE_EXPIRE_MINUTES, 0);
+		store.setDefault(PreferenceConstants.P_CACHE_PERSISTENT, false);
+		store.setDefault(PreferenceConstants.P_PARALLELISM, Runtime.getRuntime().availableProcessors());
 		store.setDefault(PreferenceConstants.P_INSPECTOR_KILL_TIME_SECONDS, DEFAULT_INSPECTOR_KILL_TIME_SECONDS);
 		store.setDefault(PreferenceConstants.P_ARROW_DIR, new File(System.getProperty("user.home"), ".cupid").getAbsolutePath());
 		store.setDefault(PreferenceConstants.P_TYPE_VIEWS, new Gson().toJson(new ArrayList<ViewRule>()));	
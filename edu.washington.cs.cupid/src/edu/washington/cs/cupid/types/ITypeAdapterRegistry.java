@@ -20,13 +20,22 @@ import com.google.common.reflect.TypeToken;
 public interface ITypeAdapterRegistry {
 	
 	/**
-	 * Add <code>adapter</code> to the registy.
+	 * Add <code>adapter</code> to the registry.
 	 * @param adapter the type adapter to add to the registry.
 	 */
 	void registerAdapter(final ITypeAdapter<?, ?> adapter);
 	
 	/**
-	 * Returns the type adapters compatible with <code>inputType</code>.
+	 * Add <code>adapter</code> to the registry with the given cost. When a value can be adapted 
+	 * by more than one chain of adapters, the chain with the lowest total cost is used.
+	 * @param adapter the type adapter to add to the registry.
+	 * @param cost the positive cost of applying the adapter
+	 */
+	void registerAdapter(final ITypeAdapter<?, ?> adapter, final int cost);
+	
+	/**
+	 * Returns the type adapters compatible with <code>inputType</code>, including chains of adapters,
+	 * ordered by cost. Includes the cheapest adapter for each reachable output type.
 	 * @param inputType the input object type query
 	 * @see {@link TypeManager#isCompatible(edu.washington.cs.cupid.capability.ICapability, TypeToken)}
 	 * @return the type adapters compatible with <code>inputType</code>.
@@ -34,8 +43,9 @@ public interface ITypeAdapterRegistry {
 	ITypeAdapter<?, ?>[] getTypeAdapters(final TypeToken<?> inputType);
 	
 	/**
-	 * Returns the type adapters compatible with inputs of type <code>inputType</code>
-	 * and producing outputs compatible with type <code>outputType</code>.
+	 * Returns the cheapest type adapter, or chain of adapters, compatible with inputs of type <code>inputType</code>
+	 * and producing outputs compatible with type <code>outputType</code>, or <code>null</code> if there is no
+	 * such adapter.
 	 * @param inputType the input object type query
 	 * @param outputType the input object type query
 	 * @see {@link TypeManager#isCompatible(edu.washington.cs.cupid.capability.ICapability, TypeToken)}